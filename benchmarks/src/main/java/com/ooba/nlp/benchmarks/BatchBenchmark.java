@@ -0,0 +1,82 @@
+package com.ooba.nlp.benchmarks;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.ooba.nlp.fasttag.TaggedSentence;
+import com.ooba.nlp.fasttag.Tagger;
+
+/**
+ * Per-text cost of tagging many short texts (titles, queries) of 5 to 24
+ * tokens: tagText is one call per text the way POS.tagText does it, batch
+ * collects TaggedSentences through the per-thread buffers, consumer
+ * reads the tags straight out of those buffers, and spans gets offset and
+ * tag triples without a String per token. The gc profiler shows the
+ * garbage per text.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BatchBenchmark {
+    static final int TEXTS = 10000;
+
+    private Tagger       tagger;
+    private List<String> texts;
+
+    @Setup
+    public void setUp() {
+        final Map<String, String[]> lexicon = Corpus.lexicon(Corpus.LEXICON);
+        tagger = Tagger.fromMap(lexicon);
+        // the synthetic corpus is one sentence of 5-24 words per ". " or "? "
+        texts = Arrays.stream(Corpus.synthetic(lexicon, TEXTS * 120, 42)
+                                    .split("(?<=[.?]) "))
+                      .limit(TEXTS)
+                      .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TEXTS)
+    public void tagText(final Blackhole bh) {
+        for (final String text : texts)
+            bh.consume(tagger.tagText(text));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TEXTS)
+    public List<TaggedSentence> batch() {
+        return tagger.tagBatch(texts);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TEXTS)
+    public void consumer(final Blackhole bh) {
+        tagger.tagBatch(texts,
+                (index, words, tags, length) -> bh.consume(tags[length - 1]));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TEXTS)
+    public void spans(final Blackhole bh) {
+        for (final String text : texts)
+            tagger.tagSpans(text, (start, end, tag) -> bh.consume(tag));
+    }
+}
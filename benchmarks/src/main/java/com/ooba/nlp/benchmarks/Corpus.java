@@ -0,0 +1,146 @@
+package com.ooba.nlp.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import com.ooba.nlp.fasttag.FastTag;
+
+/**
+ * Inputs shared by the benchmarks: the lexicons packaged in the fasttag
+ * jar, the bundled corpus.txt, and synthetic text generated from a lexicon
+ * with a fixed seed so every run sees the same words.
+ */
+final class Corpus {
+    static final String LEXICON         = "lexicon.txt";
+    static final String MEDICAL_LEXICON = "medical_plus_regular_lexicon.txt";
+    /** Name for {@link #syntheticLexicon(int, long)} in benchmark params. */
+    static final String SYNTHETIC_LEXICON = "synthetic";
+
+    private Corpus() {}
+
+    /**
+     * FastTag reads lexicons from a path, so copy the packaged resource to a
+     * temporary file first.
+     *
+     * @return path of a file holding the named classpath resource
+     */
+    static String resourceFile(final String name) {
+        try (InputStream in = open(name)) {
+            final File file = File.createTempFile("fasttag-", "-" + name);
+            file.deleteOnExit();
+            Files.copy(in, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return file.getPath();
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static InputStream open(final String name) {
+        final InputStream in = Corpus.class.getClassLoader()
+                                           .getResourceAsStream(name);
+        if (in == null)
+            throw new IllegalStateException("Missing resource: " + name);
+        return in;
+    }
+
+    /**
+     * @return the bundled English sample text
+     */
+    static String bundled() {
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(
+                open("corpus.txt"), StandardCharsets.UTF_8))) {
+            return r.lines().collect(Collectors.joining("\n"));
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Builds roughly chars characters of sentence-shaped text: lexicon words
+     * with some unknown words, numbers and punctuation mixed in.
+     */
+    static String synthetic(final Map<String, String[]> lexicon,
+            final int chars, final long seed) {
+        final String[] vocab = lexicon.keySet().toArray(new String[0]);
+        Arrays.sort(vocab);
+        final Random random = new Random(seed);
+        final StringBuilder sb = new StringBuilder(chars + 64);
+        while (sb.length() < chars) {
+            final int words = 5 + random.nextInt(20);
+            for (int w = 0; w < words; w++) {
+                if (w > 0)
+                    sb.append(random.nextInt(12) == 0 ? ", " : " ");
+                final int kind = random.nextInt(20);
+                if (kind == 0)
+                    sb.append(random.nextInt(10000));
+                else if (kind == 1)
+                    sb.append(random.nextInt(100)).append('.').append(
+                            random.nextInt(100));
+                else if (kind == 2)
+                    sb.append(unknownWord(random));
+                else
+                    sb.append(vocab[random.nextInt(vocab.length)]);
+            }
+            sb.append(random.nextInt(8) == 0 ? "? " : ". ");
+        }
+        return sb.toString();
+    }
+
+    private static String unknownWord(final Random random) {
+        final String[] suffixes = { "", "s", "ed", "ing", "ly", "al" };
+        final char[] stem = new char[3 + random.nextInt(8)];
+        for (int i = 0; i < stem.length; i++)
+            stem[i] = (char) ('a' + random.nextInt(26));
+        return new String(stem) + suffixes[random.nextInt(suffixes.length)];
+    }
+
+    /**
+     * Writes a text lexicon of made-up words, each with the tags of a random
+     * lexicon.txt word, for loading at sizes the bundled lexicons don't
+     * reach.
+     *
+     * @return path of a temporary file holding entries lines
+     */
+    static String syntheticLexicon(final int entries, final long seed) {
+        final Map<String, String[]> base = lexicon(LEXICON);
+        final String[] words = base.keySet().toArray(new String[0]);
+        Arrays.sort(words);
+        final Random random = new Random(seed);
+        try {
+            final File file = File.createTempFile("fasttag-", "-synthetic.txt");
+            file.deleteOnExit();
+            try (Writer out = Files.newBufferedWriter(file.toPath())) {
+                for (int i = 0; i < entries; i++) {
+                    // the index keeps words unique
+                    out.write(unknownWord(random));
+                    out.write(Integer.toString(i, 36));
+                    for (final String tag : base.get(
+                            words[random.nextInt(words.length)])) {
+                        out.write(' ');
+                        out.write(tag);
+                    }
+                    out.write('\n');
+                }
+            }
+            return file.getPath();
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static Map<String, String[]> lexicon(final String name) {
+        return FastTag.buildLexicon(resourceFile(name));
+    }
+}
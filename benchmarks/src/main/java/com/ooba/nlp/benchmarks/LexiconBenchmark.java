@@ -0,0 +1,89 @@
+package com.ooba.nlp.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ooba.nlp.fasttag.CompiledLexicon;
+import com.ooba.nlp.fasttag.FastTag;
+import com.ooba.nlp.fasttag.Lexicon;
+import com.ooba.nlp.fasttag.LexiconCompiler;
+
+/**
+ * Cost of getting a lexicon into memory, from text and from a compiled file,
+ * for the bundled lexicons and a synthetic one of two million entries.
+ * lineByLine is the sequential Files.lines, split and HashMap parse that
+ * buildLexicon used to be, for comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class LexiconBenchmark {
+    private static final int SYNTHETIC_ENTRIES = 2_000_000;
+
+    @Param({ Corpus.LEXICON, Corpus.MEDICAL_LEXICON,
+            Corpus.SYNTHETIC_LEXICON })
+    public String lexicon;
+
+    private String textPath;
+    private String compiledPath;
+
+    @Setup
+    public void setUp() throws IOException {
+        textPath = lexicon.equals(Corpus.SYNTHETIC_LEXICON)
+                ? Corpus.syntheticLexicon(SYNTHETIC_ENTRIES, 23)
+                : Corpus.resourceFile(lexicon);
+        final File compiled = File.createTempFile("fasttag-", ".bin");
+        compiled.deleteOnExit();
+        compiledPath = compiled.getPath();
+        LexiconCompiler.compile(textPath, compiledPath);
+    }
+
+    @Benchmark
+    public Map<String, String[]> lineByLine() throws IOException {
+        final Map<String, String[]> map = new HashMap<>();
+        try (Stream<String> lines = Files.lines(Paths.get(textPath))) {
+            lines.filter(s -> s.contains(" "))
+                 .map(s -> s.split(" "))
+                 .forEach(bits -> map.put(bits[0],
+                         Arrays.copyOfRange(bits, 1, bits.length)));
+        }
+        return map;
+    }
+
+    @Benchmark
+    public Map<String, String[]> buildLexicon() {
+        return FastTag.buildLexicon(textPath);
+    }
+
+    @Benchmark
+    public Lexicon buildIdLexicon() {
+        return FastTag.buildIdLexicon(textPath);
+    }
+
+    @Benchmark
+    public CompiledLexicon openCompiled() throws IOException {
+        return CompiledLexicon.open(compiledPath);
+    }
+}
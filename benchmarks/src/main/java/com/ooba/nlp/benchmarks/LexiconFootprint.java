@@ -0,0 +1,74 @@
+package com.ooba.nlp.benchmarks;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import com.ooba.nlp.fasttag.CompiledLexicon;
+
+/**
+ * Retained heap and full GC time with both text lexicons loaded, as
+ * HashMaps and off-heap. JMH has no notion of retained size, so this is a
+ * plain program:
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.ooba.nlp.benchmarks.LexiconFootprint
+ * </pre>
+ *
+ * Run it with a fixed heap and collector (say -Xms1g -Xmx1g -XX:+UseG1GC)
+ * so the GC times are comparable between runs.
+ */
+public final class LexiconFootprint {
+    private static final int GCS = 20;
+
+    private LexiconFootprint() {}
+
+    public static void main(final String[] args) throws IOException {
+        measure("hashMap", () -> new Object[] {
+                Corpus.lexicon(Corpus.LEXICON),
+                Corpus.lexicon(Corpus.MEDICAL_LEXICON) });
+        measure("offHeap", () -> new Object[] {
+                offHeap(Corpus.LEXICON), offHeap(Corpus.MEDICAL_LEXICON) });
+    }
+
+    private static Map<String, String[]> offHeap(final String name) {
+        try {
+            return CompiledLexicon.fromText(Corpus.resourceFile(name));
+        } catch (final IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void measure(final String label,
+            final Supplier<Object[]> load) {
+        final long before = usedAfterGc();
+        final Object[] lexicons = load.get();
+        final long retained = usedAfterGc() - before;
+        final long gcMillis = gcMillis();
+        for (int i = 0; i < GCS; i++)
+            System.gc();
+        final double perGc = (double) (gcMillis() - gcMillis) / GCS;
+        System.out.printf("%-8s retained %6.1f MB, full GC %5.2f ms%n",
+                label, retained / 1e6, perGc);
+        // keep the lexicons reachable through the GCs above
+        if (lexicons.length == 0)
+            System.out.println();
+    }
+
+    private static long usedAfterGc() {
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        final Runtime rt = Runtime.getRuntime();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private static long gcMillis() {
+        long total = 0;
+        for (final GarbageCollectorMXBean gc : ManagementFactory
+                .getGarbageCollectorMXBeans())
+            total += Math.max(0, gc.getCollectionTime());
+        return total;
+    }
+}
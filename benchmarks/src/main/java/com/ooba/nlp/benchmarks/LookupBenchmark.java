@@ -0,0 +1,95 @@
+package com.ooba.nlp.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.ooba.nlp.fasttag.CompiledLexicon;
+import com.ooba.nlp.fasttag.FastTag;
+import com.ooba.nlp.fasttag.Lexicon;
+import com.ooba.nlp.fasttag.LexiconCompiler;
+import com.ooba.nlp.util.TagIds;
+import com.ooba.nlp.util.Tokenizer;
+
+/**
+ * Cost of the rule 0 lexicon lookup per token: exact form, then lower case.
+ * hashMap is the old Map lookup, which lower-cased every token up front;
+ * offHeap is the compiled format in a direct buffer instead of a mapped file.
+ * For what each costs in heap and GC time see {@link LexiconFootprint}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LookupBenchmark {
+    static final int TOKENS = 10000;
+
+    private Map<String, short[]> map;
+    private Lexicon              lexicon;
+    private Lexicon              compiled;
+    private Lexicon              offHeap;
+    private String[]             words;
+
+    @Setup
+    public void setUp() throws IOException {
+        final Map<String, String[]> text = Corpus.lexicon(Corpus.LEXICON);
+        map = new HashMap<>();
+        text.forEach((word, tags) -> map.put(word, TagIds.ids(tags)));
+        lexicon = FastTag.toIdLexicon(text);
+        final File bin = File.createTempFile("fasttag-", ".bin");
+        bin.deleteOnExit();
+        LexiconCompiler.compile(Corpus.resourceFile(Corpus.LEXICON),
+                bin.getPath());
+        compiled = CompiledLexicon.open(bin.getPath()).ids();
+        offHeap = CompiledLexicon.of(text).ids();
+        words = Tokenizer.wordsToStream(
+                Corpus.synthetic(text, TOKENS * 8, 42))
+                         .limit(TOKENS)
+                         .toArray(String[]::new);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void hashMap(final Blackhole bh) {
+        for (final String word : words)
+            bh.consume(map.getOrDefault(word, map.get(word.toLowerCase())));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void perfectHash(final Blackhole bh) {
+        for (final String word : words)
+            bh.consume(lexicon.lookup(word));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void compiled(final Blackhole bh) {
+        for (final String word : words)
+            bh.consume(compiled.lookup(word));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void offHeap(final Blackhole bh) {
+        for (final String word : words)
+            bh.consume(offHeap.lookup(word));
+    }
+}
@@ -0,0 +1,80 @@
+package com.ooba.nlp.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.ooba.nlp.util.Numerals;
+import com.ooba.nlp.util.Util;
+
+/**
+ * Per-token cost of the rule 2 number test on noun-like tokens, about a
+ * quarter of which start with a digit without being numbers ("3rd",
+ * "10am"): parseFloat is the original exception-based check, containsFloat
+ * the same check behind a first-char filter, and numerals the
+ * recognizer rule 2 now uses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class NumberBenchmark {
+    static final int TOKENS = 10000;
+
+    private String[] tokens;
+
+    @Setup
+    public void setUp() {
+        final String[] samples = { "dog", "ball", "street", "committee",
+                "proposal", "3rd", "10am", "4x4", "2nd", "42", "3.14",
+                "1,000", "45%", "$20", "6.02e23", "budget" };
+        final Random random = new Random(42);
+        tokens = new String[TOKENS];
+        for (int i = 0; i < TOKENS; i++)
+            tokens[i] = samples[random.nextInt(samples.length)];
+    }
+
+    private static boolean parses(final String s) {
+        try {
+            Float.parseFloat(s);
+            return true;
+        } catch (final NumberFormatException e) {
+            return false;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void parseFloat(final Blackhole bh) {
+        for (final String token : tokens)
+            bh.consume(parses(token));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void containsFloat(final Blackhole bh) {
+        for (final String token : tokens)
+            bh.consume(Util.containsFloat(token));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void numerals(final Blackhole bh) {
+        for (final String token : tokens)
+            bh.consume(Numerals.isNumber(token));
+    }
+}
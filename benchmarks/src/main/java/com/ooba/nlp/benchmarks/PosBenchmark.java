@@ -0,0 +1,88 @@
+package com.ooba.nlp.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ooba.nlp.fasttag.TaggedSentence;
+import com.ooba.nlp.fasttag.Tagger;
+import com.ooba.nlp.util.POS;
+import com.ooba.nlp.util.TagIds;
+import com.ooba.nlp.util.Tokenizer;
+
+/**
+ * Cost per token of counting the nouns in tagged text. valueOf is the old
+ * POS.fromTaggedWord: substring, Enum.valueOf and an exception for tags
+ * such as "." that are not constant names. taggedAs classifies the same
+ * word/TAG strings through the tag table; ids tests the tag ids of a
+ * TaggedSentence against a flag mask, with no strings at all.
+ * <p/>
+ * The text is tagged by Tagger.getDefault(), which loads the compiled
+ * lexicon.bin snapshot bundled in the jar.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PosBenchmark {
+    static final int TOKENS = 10000;
+
+    private String[]       taggedWords;
+    private TaggedSentence sentence;
+
+    @Setup
+    public void setUp() {
+        final String[] words = Tokenizer.wordsToStream(Corpus.synthetic(
+                Corpus.lexicon(Corpus.LEXICON), TOKENS * 8, 42))
+                                        .limit(TOKENS)
+                                        .toArray(String[]::new);
+        sentence = Tagger.getDefault().tagSentence(words);
+        taggedWords = sentence.toTaggedWords().toArray(new String[0]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public int valueOf() {
+        int nouns = 0;
+        for (final String w : taggedWords)
+            try {
+                if (POS.valueOf(w.substring(w.lastIndexOf('/') + 1)).isNoun())
+                    nouns++;
+            } catch (final IllegalArgumentException e) {
+                // not a constant name
+            }
+        return nouns;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public long taggedAs() {
+        long nouns = 0;
+        for (final String w : taggedWords)
+            if (POS.isNoun(w))
+                nouns++;
+        return nouns;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public int ids() {
+        int nouns = 0;
+        for (final short tag : sentence.tags)
+            if (TagIds.is(tag, TagIds.NOUN))
+                nouns++;
+        return nouns;
+    }
+}
@@ -0,0 +1,95 @@
+package com.ooba.nlp.benchmarks;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ooba.nlp.fasttag.RuleSet;
+import com.ooba.nlp.fasttag.TaggedSentence;
+import com.ooba.nlp.fasttag.Tagger;
+import com.ooba.nlp.util.Tokenizer;
+
+/**
+ * Per-token tagging cost as the rule set grows: the default rules, then the
+ * default rules followed by generated lexical and contextual rules. With the
+ * dispatch table the cost should stay close to flat.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RuleBenchmark {
+    static final int TOKENS = 10000;
+
+    @Param({ "0", "100", "500" })
+    public int extraRules;
+
+    private Tagger   tagger;
+    private String[] words;
+
+    @Setup
+    public void setUp() {
+        final Map<String, String[]> lexicon = Corpus.lexicon(Corpus.LEXICON);
+        final StringBuilder rules = new StringBuilder();
+        rules.append(String.join("\n",
+                "VBD NN PREVTAG DT", "VBP NN PREVTAG DT", "VB NN PREVTAG DT",
+                "N* CD NUMBER", "N* VBN SUFFIX ed", "* RB SUFFIX ly",
+                "NN* JJ SUFFIX al", "NN* VB PREVWORD would",
+                "NN NNS SUFFIX s", "NN VBG SUFFIX ing"));
+        final String[] tags = { "NN", "NNS", "NNP", "VB", "VBD", "VBG", "VBN",
+                "VBZ", "JJ", "JJR", "RB", "IN", "DT", "CD" };
+        final String[] vocab = lexicon.keySet().toArray(new String[0]);
+        Arrays.sort(vocab);
+        final Random random = new Random(42);
+        for (int r = 0; r < extraRules; r++) {
+            final String word = vocab[random.nextInt(vocab.length)];
+            rules.append('\n')
+                 .append(tags[random.nextInt(tags.length)]).append(' ')
+                 .append(tags[random.nextInt(tags.length)]).append(' ');
+            switch (random.nextInt(4)) {
+                case 0:
+                    rules.append("SUFFIX ").append(
+                            word.substring(Math.max(0, word.length() - 3)));
+                    break;
+                case 1:
+                    rules.append("PREFIX ").append(
+                            word.substring(0, Math.min(3, word.length())));
+                    break;
+                case 2:
+                    rules.append("PREVTAG ")
+                         .append(tags[random.nextInt(tags.length)]);
+                    break;
+                default:
+                    rules.append("NEXTWORD ").append(word);
+            }
+        }
+        tagger = Tagger.fromMap(lexicon)
+                       .withRules(RuleSet.parse(rules.toString()));
+        words = Tokenizer.wordsToStream(
+                Corpus.synthetic(lexicon, TOKENS * 8, 42))
+                         .limit(TOKENS)
+                         .toArray(String[]::new);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public TaggedSentence perToken() {
+        return tagger.tagSentence(words);
+    }
+}
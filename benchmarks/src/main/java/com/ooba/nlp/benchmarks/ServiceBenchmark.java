@@ -0,0 +1,72 @@
+package com.ooba.nlp.benchmarks;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ooba.nlp.fasttag.TaggedSentence;
+import com.ooba.nlp.fasttag.Tagger;
+import com.ooba.nlp.fasttag.TaggingService;
+
+/**
+ * Texts per second when 16 request threads each tag one short text at a
+ * time: direct tags on the request thread, service submits to a
+ * TaggingService and waits for the result. The service's latency
+ * histogram is printed at the end of each trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Threads(16)
+@Fork(1)
+public class ServiceBenchmark {
+    private Tagger         tagger;
+    private TaggingService service;
+    private String[]       texts;
+
+    @Setup
+    public void setUp() {
+        final Map<String, String[]> lexicon = Corpus.lexicon(Corpus.LEXICON);
+        tagger = Tagger.fromMap(lexicon);
+        service = TaggingService.start(tagger);
+        texts = Arrays.stream(Corpus.synthetic(lexicon, 1000 * 120, 42)
+                                    .split("(?<=[.?]) "))
+                      .toArray(String[]::new);
+    }
+
+    @TearDown
+    public void tearDown() {
+        service.close();
+        System.out.println(service);
+    }
+
+    private String text() {
+        return texts[ThreadLocalRandom.current().nextInt(texts.length)];
+    }
+
+    @Benchmark
+    public TaggedSentence direct() {
+        return tagger.tagBatch(Arrays.asList(text())).get(0);
+    }
+
+    @Benchmark
+    public TaggedSentence service() {
+        return service.submit(text()).join();
+    }
+}
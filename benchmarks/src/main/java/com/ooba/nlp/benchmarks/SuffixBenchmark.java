@@ -0,0 +1,106 @@
+package com.ooba.nlp.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.ooba.nlp.util.SuffixAutomaton;
+import com.ooba.nlp.util.Util;
+
+import pair.Pair;
+
+/**
+ * Per-token cost of the suffix rules: chained runs them the way rules 3-8
+ * used to, as Util.onlyIf closures each doing its own endsWith; automaton
+ * finds every matching suffix with one walk from the end of the token and
+ * then applies the last matching rule. 5 is the suffixes of the default
+ * rules, 40 adds typical domain suffixes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SuffixBenchmark {
+    static final int TOKENS = 10000;
+
+    static final String[] SUFFIXES = { "ed", "ly", "al", "s", "ing", "itis",
+            "osis", "ectomy", "ology", "emia", "oma", "ase", "ide", "ism",
+            "ist", "ize", "ness", "ment", "tion", "sion", "able", "ible", "ful",
+            "less", "ous", "ive", "ic", "ity", "er", "est", "ward", "hood",
+            "ship", "dom", "ee", "ette", "ency", "ance", "ure", "ary" };
+
+    @Param({ "5", "40" })
+    public int suffixCount;
+
+    private String[]                                  tokens;
+    private List<UnaryOperator<Pair<String, String>>> chain;
+    private SuffixAutomaton                           automaton;
+    private String[]                                  tagOf;
+    private int[]                                     matches;
+
+    @Setup
+    public void setUp() {
+        final String[] suffixes = Arrays.copyOf(SUFFIXES, suffixCount);
+        final Map<String, String[]> lexicon = Corpus.lexicon(Corpus.LEXICON);
+        final String[] vocab = lexicon.keySet().toArray(new String[0]);
+        Arrays.sort(vocab);
+        final Random random = new Random(42);
+        tokens = new String[TOKENS];
+        for (int i = 0; i < TOKENS; i++)
+            tokens[i] = vocab[random.nextInt(vocab.length)];
+
+        tagOf = new String[suffixes.length];
+        chain = new ArrayList<>();
+        for (int s = 0; s < suffixes.length; s++) {
+            final String suffix = suffixes[s];
+            tagOf[s] = "T" + s;
+            chain.add(Util.onlyIf(pair -> pair.left.endsWith(suffix),
+                    Pair.F.replaceRight(tagOf[s])));
+        }
+        automaton = SuffixAutomaton.of(suffixes);
+        matches = new int[suffixes.length];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void chained(final Blackhole bh) {
+        for (final String token : tokens) {
+            Pair<String, String> p = Pair.make(token, "NN");
+            for (final UnaryOperator<Pair<String, String>> rule : chain)
+                p = rule.apply(p);
+            bh.consume(p.right);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void automaton(final Blackhole bh) {
+        for (final String token : tokens) {
+            final int count = automaton.matches(token, matches);
+            int last = -1;
+            for (int m = 0; m < count; m++)
+                last = Math.max(last, matches[m]);
+            bh.consume(last < 0 ? "NN" : tagOf[last]);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.ooba.nlp.benchmarks;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.ooba.nlp.fasttag.FastTag;
+import com.ooba.nlp.fasttag.Lexicon;
+import com.ooba.nlp.fasttag.TaggedSentence;
+import com.ooba.nlp.fasttag.Tagger;
+import com.ooba.nlp.fasttag.TaggingSession;
+import com.ooba.nlp.util.POS;
+import com.ooba.nlp.util.Tokenizer;
+
+/**
+ * Tagging cost. Benchmarks marked per token tag the same TOKENS tokens and
+ * report the average time per token; sentence reports the time for one
+ * ordinary sentence; tagText is the end-to-end POS.tagText call, and
+ * session tags the same text fed to a TaggingSession in PIECE-char pieces.
+ * <p/>
+ * Every lexicon comes from the jar, so the working directory does not
+ * matter. The taggers built here parse the bundled lexicon.txt, but tagText
+ * goes through Tagger.getDefault(), which reads the compiled lexicon.bin
+ * snapshot the build puts in the jar (or the lexicon named by
+ * -Dfasttag.lexicon), and so tags against that snapshot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TaggingBenchmark {
+    static final int TOKENS = 10000;
+    static final int PIECE  = 64;
+
+    @Param({ "bundled", "synthetic" })
+    public String corpus;
+
+    private Map<String, String[]> lexicon;
+    private Lexicon               idLexicon;
+    private Tagger                tagger;
+    private Tagger                cachedTagger;
+    private Tagger                measuredTagger;
+    private String[]              words;
+    private List<String>          wordList;
+    private String[]              sentence;
+    private String                text;
+    private String[]              pieces;
+
+    @Setup
+    public void setUp() {
+        lexicon = Corpus.lexicon(Corpus.LEXICON);
+        idLexicon = FastTag.toIdLexicon(lexicon);
+        tagger = Tagger.fromMap(lexicon);
+        cachedTagger = tagger.withTokenCache(1 << 16);
+        measuredTagger = tagger.withMetrics();
+        final String source = corpus.equals("bundled") ? Corpus.bundled()
+                : Corpus.synthetic(lexicon, TOKENS * 8, 42);
+        final StringBuilder sb = new StringBuilder();
+        String[] tokens = new String[0];
+        while (tokens.length < TOKENS) {
+            sb.append(source).append('\n');
+            tokens = Tokenizer.wordsToStream(sb.toString())
+                              .toArray(String[]::new);
+        }
+        words = Arrays.copyOf(tokens, TOKENS);
+        wordList = Arrays.asList(words);
+        text = sb.toString();
+        pieces = new String[(text.length() + PIECE - 1) / PIECE];
+        for (int i = 0; i < pieces.length; i++)
+            pieces[i] = text.substring(i * PIECE,
+                    Math.min(text.length(), (i + 1) * PIECE));
+        sentence = Tokenizer.wordsToStream(
+                "The committee would review the proposal carefully before"
+                        + " voting on the final budget next Tuesday.")
+                            .toArray(String[]::new);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public void perTokenTag(final Blackhole bh) {
+        for (final String word : words)
+            bh.consume(FastTag.tag(lexicon, word));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public List<String> perTokenOldTag() {
+        return FastTag._tag(lexicon, wordList);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public String[] perTokenTagSentence() {
+        return FastTag.tagSentence(lexicon, words);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public short[] perTokenTagIds() {
+        return FastTag.tagIds(idLexicon, words);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public TaggedSentence perTokenTagCached() {
+        return cachedTagger.tagSentence(words);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public TaggedSentence perTokenTagSentenceIds() {
+        return tagger.tagSentence(words);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public TaggedSentence perTokenTagMetrics() {
+        return measuredTagger.tagSentence(words);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TOKENS)
+    public TaggedSentence perTokenTagParallel() {
+        return tagger.tagParallel(words);
+    }
+
+    @Benchmark
+    public TaggedSentence sentence() {
+        return tagger.tagSentence(sentence);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<String> tagText() {
+        return POS.tagText(text);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void session(final Blackhole bh) {
+        final TaggingSession session = tagger.newSession();
+        for (final String piece : pieces)
+            bh.consume(session.append(piece));
+        bh.consume(session.finish());
+    }
+}
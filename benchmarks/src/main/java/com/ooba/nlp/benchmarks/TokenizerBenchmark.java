@@ -0,0 +1,70 @@
+package com.ooba.nlp.benchmarks;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ooba.nlp.util.TokenScanner;
+import com.ooba.nlp.util.Tokenizer;
+
+/**
+ * Tokenizer throughput over a fixed amount of text (about 1MB), in
+ * documents per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TokenizerBenchmark {
+    static final int SIZE = 1 << 20;
+
+    @Param({ "bundled", "synthetic" })
+    public String corpus;
+
+    private String text;
+
+    @Setup
+    public void setUp() {
+        if (corpus.equals("bundled")) {
+            final String bundled = Corpus.bundled();
+            final StringBuilder sb = new StringBuilder(SIZE + bundled.length());
+            while (sb.length() < SIZE)
+                sb.append(bundled).append('\n');
+            text = sb.toString();
+        } else
+            text = Corpus.synthetic(Corpus.lexicon(Corpus.LEXICON), SIZE, 42);
+    }
+
+    @Benchmark
+    public List<String> wordsToList() {
+        return Tokenizer.wordsToList(text);
+    }
+
+    @Benchmark
+    public long wordsToStreamFromReader() {
+        return Tokenizer.wordsToStream(new StringReader(text)).count();
+    }
+
+    @Benchmark
+    public long scanOffsets() {
+        final TokenScanner scanner = new TokenScanner(text);
+        long sum = 0;
+        while (scanner.next())
+            sum += scanner.end();
+        return sum;
+    }
+}
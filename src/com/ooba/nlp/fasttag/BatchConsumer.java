@@ -0,0 +1,27 @@
+package com.ooba.nlp.fasttag;
+
+import com.ooba.nlp.util.TagIds;
+
+/**
+ * Receives the tagged texts of
+ * {@link Tagger#tagBatch(Iterable, BatchConsumer)}, one at a time.
+ */
+@FunctionalInterface
+public interface BatchConsumer {
+    /**
+     * words and tags are scratch buffers that the tagger reuses for the next
+     * text: only their first length entries belong to this text, they are
+     * only valid until this method returns, and they must not be modified.
+     * Copy out whatever should outlive the call.
+     *
+     * @param index
+     *            position of the text in the batch, from 0
+     * @param words
+     *            the tokens of the text
+     * @param tags
+     *            their {@link TagIds} ids
+     * @param length
+     *            the number of tokens
+     */
+    void accept(int index, String[] words, short[] tags, int length);
+}
@@ -0,0 +1,670 @@
+package com.ooba.nlp.fasttag;
+
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.ooba.nlp.util.CharSpan;
+import com.ooba.nlp.util.TokenScanner;
+
+/**
+ * Tags whole files, directory trees or standard input, for offline corpus
+ * jobs.
+ * <p/>
+ * The calling thread reads the input (files are memory-mapped a window at a
+ * time, other channels read into a direct buffer), decodes it as UTF-8 and
+ * cuts it into chunks of about chunkSize chars, always between tokens. A
+ * pool of workers tags and formats the chunks, and a writer thread writes
+ * them out in input order. At most two chunks per worker are in flight, so
+ * memory stays bounded however large the input.
+ * <p/>
+ * A chunk ends with a sentence, as {@link Tagger#tagSentences(java.io.Reader)}
+ * splits them, whose last token {@link RuleSet#isCutPoint(short)} allows
+ * to be cut after, as {@link FastTag#chunkStarts} does. Each chunk is then
+ * tagged like tagSentences with the word before it and the word after it as
+ * context, so each input tags the same as it does whole. Only when no such
+ * sentence ends within four chunks or a megabyte of text, whichever is more,
+ * is a chunk cut between two other tokens; a rule that looks at the tag of
+ * the token before that cut can then tag differently. Output does not
+ * depend on the number of workers. Instances are immutable; each with method
+ * returns a changed copy.
+ */
+public final class BulkTagger {
+    // how much of a file is mapped at once
+    private static final int    MAP_WINDOW    = 1 << 26;
+    // the one-char tokens that end a sentence, as FastTag.isSentenceEnd
+    private static final String SENTENCE_ENDS = ".?!";
+    // least text to go by without a sentence end before a chunk is cut
+    // elsewhere: room for a sentence of Tagger.MAX_SENTENCE long tokens
+    private static final int    MIN_FALLBACK  = 1 << 20;
+
+    /** How tagged text is written. */
+    public enum Format {
+        /** word/TAG separated by spaces, a sentence per line */
+        TAGGED {
+            @Override
+            void append(final StringBuilder out, final TaggedSentence s) {
+                for (int i = 0; i < s.size(); i++) {
+                    if (i > 0)
+                        out.append(' ');
+                    out.append(s.word(i)).append('/').append(s.tag(i));
+                }
+                out.append('\n');
+            }
+        },
+        /** word, tab, TAG: a token per line */
+        TSV {
+            @Override
+            void append(final StringBuilder out, final TaggedSentence s) {
+                for (int i = 0; i < s.size(); i++)
+                    out.append(s.word(i)).append('\t').append(s.tag(i))
+                       .append('\n');
+            }
+        },
+        /**
+         * CoNLL-U: a token per line with the tag in the XPOS column, the
+         * other columns empty ("_"), and a blank line after each sentence
+         */
+        CONLL {
+            @Override
+            void append(final StringBuilder out, final TaggedSentence s) {
+                for (int i = 0; i < s.size(); i++)
+                    out.append(i + 1).append('\t').append(s.word(i))
+                       .append("\t_\t_\t").append(s.tag(i))
+                       .append("\t_\t_\t_\t_\t_\n");
+                out.append('\n');
+            }
+        };
+
+        abstract void append(StringBuilder out, TaggedSentence s);
+    }
+
+    /**
+     * What a run did, for the summary line.
+     */
+    public static final class Summary {
+        private final int  inputs;
+        private final long bytes;
+        private final long sentences;
+        private final long tokens;
+        private final long nanos;
+
+        Summary(final int inputs, final long bytes, final long sentences,
+                final long tokens, final long nanos) {
+            this.inputs = inputs;
+            this.bytes = bytes;
+            this.sentences = sentences;
+            this.tokens = tokens;
+            this.nanos = nanos;
+        }
+
+        public int inputs() {
+            return inputs;
+        }
+
+        public long bytes() {
+            return bytes;
+        }
+
+        public long sentences() {
+            return sentences;
+        }
+
+        public long tokens() {
+            return tokens;
+        }
+
+        public long nanos() {
+            return nanos;
+        }
+
+        @Override
+        public String toString() {
+            final double seconds = Math.max(nanos, 1) / 1e9;
+            return String.format(Locale.ROOT,
+                    "%d inputs, %.1f MB, %d sentences, %d tokens in %.2f s:"
+                            + " %.0f tokens/s, %.1f MB/s",
+                    inputs, bytes / 1e6, sentences, tokens, seconds,
+                    tokens / seconds, bytes / 1e6 / seconds);
+        }
+    }
+
+    private final Tagger tagger;
+    private final Format format;
+    private final int    workers;
+    private final int    chunkSize;
+
+    /**
+     * Formats as {@link Format#TAGGED}, with one worker per processor and
+     * chunks of 64K chars.
+     */
+    public BulkTagger(final Tagger tagger) {
+        this(tagger, Format.TAGGED,
+                Runtime.getRuntime().availableProcessors(), 1 << 16);
+    }
+
+    private BulkTagger(final Tagger tagger, final Format format,
+            final int workers, final int chunkSize) {
+        if (workers <= 0 || chunkSize <= 0)
+            throw new IllegalArgumentException(
+                    "workers and chunkSize must be positive");
+        this.tagger = tagger;
+        this.format = format;
+        this.workers = workers;
+        this.chunkSize = chunkSize;
+    }
+
+    public BulkTagger withFormat(final Format format) {
+        return new BulkTagger(tagger, format, workers, chunkSize);
+    }
+
+    public BulkTagger withWorkers(final int workers) {
+        return new BulkTagger(tagger, format, workers, chunkSize);
+    }
+
+    /**
+     * @param chunkSize
+     *            about how many chars each worker tags at a time
+     */
+    public BulkTagger withChunkSize(final int chunkSize) {
+        return new BulkTagger(tagger, format, workers, chunkSize);
+    }
+
+    /**
+     * Tags files and, recursively, the regular files under directories, in
+     * the order given and each directory in name order, to one output.
+     *
+     * @param out
+     *            written as UTF-8 and not closed
+     */
+    public Summary tag(final List<Path> inputs, final WritableByteChannel out)
+            throws IOException {
+        final List<Path> files = new ArrayList<>();
+        for (final Path input : inputs)
+            if (Files.isDirectory(input))
+                try (Stream<Path> tree = Files.walk(input)) {
+                    files.addAll(tree.filter(Files::isRegularFile).sorted()
+                                     .collect(Collectors.toList()));
+                }
+            else
+                files.add(input);
+        try (Run run = new Run(out)) {
+            for (final Path file : files)
+                run.read(file);
+            return run.finish();
+        }
+    }
+
+    /**
+     * @param in
+     *            read to the end and not closed
+     * @param out
+     *            written as UTF-8 and not closed
+     */
+    public Summary tag(final ReadableByteChannel in,
+            final WritableByteChannel out) throws IOException {
+        try (Run run = new Run(out)) {
+            run.read(in);
+            return run.finish();
+        }
+    }
+
+    /**
+     * One pass over the inputs: this thread reads and chunks, the pool tags
+     * and the writer thread writes.
+     */
+    private final class Run implements AutoCloseable {
+        // marks the end of the chunks for the writer
+        private final Future<String> end = CompletableFuture
+                .completedFuture(null);
+
+        private final ExecutorService               pool;
+        private final BlockingQueue<Future<String>> chunks;
+        private final Thread                        writer;
+        private final long                          start = System.nanoTime();
+        private final CharsetDecoder                decoder;
+        private final CharBuffer                    decoded;
+        private final StringBuilder                 pending;
+        private final TokenScanner                  scanner;
+        private final CharSpan                      word = new CharSpan();
+        // by SENTENCE_ENDS: whether a chunk may end after it
+        private final boolean[]                     cutPoints;
+        // the last token of the chunk before, and the tokens either side of
+        // the cut findCut found
+        private String                              before;
+        private String                              cutBefore;
+        private String                              cutAfter;
+        private final LongAdder                     sentences = new LongAdder();
+        private final LongAdder                     tokens    = new LongAdder();
+        private int                                 inputs;
+        private long                                bytes;
+        // what stopped the writer, if anything
+        private volatile Throwable                  failure;
+
+        Run(final WritableByteChannel out) {
+            final AtomicInteger n = new AtomicInteger();
+            pool = Executors.newFixedThreadPool(workers, r -> {
+                final Thread t = new Thread(r,
+                        "fasttag-bulk-" + n.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            chunks = new ArrayBlockingQueue<>(2 * workers);
+            decoder = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            decoded = CharBuffer.allocate(Math.min(chunkSize, 1 << 16));
+            pending = new StringBuilder(Math.min(chunkSize, 1 << 20));
+            scanner = new TokenScanner();
+            cutPoints = new boolean[SENTENCE_ENDS.length()];
+            for (int k = 0; k < cutPoints.length; k++)
+                cutPoints[k] = tagger.rules().isCutPoint(FastTag.firstTag(
+                        tagger.lexicon(), SENTENCE_ENDS.substring(k, k + 1)));
+            writer = new Thread(() -> write(out), "fasttag-bulk-writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
+
+        void read(final Path file) throws IOException {
+            try (FileChannel ch = FileChannel.open(file,
+                    StandardOpenOption.READ)) {
+                final long size = ch.size();
+                long pos = 0;
+                while (pos < size) {
+                    final ByteBuffer window = ch.map(
+                            FileChannel.MapMode.READ_ONLY, pos,
+                            Math.min(MAP_WINDOW, size - pos));
+                    decode(window, pos + window.limit() == size);
+                    // a char split by the window end is mapped again
+                    pos += window.position();
+                    if (window.position() == 0)
+                        break;
+                }
+                bytes += size;
+            }
+            endInput();
+        }
+
+        void read(final ReadableByteChannel in) throws IOException {
+            final ByteBuffer buf = ByteBuffer.allocateDirect(1 << 16);
+            for (int n; (n = in.read(buf)) >= 0;) {
+                bytes += n;
+                buf.flip();
+                decode(buf, false);
+                buf.compact();
+            }
+            endInput();
+        }
+
+        private void endInput() throws IOException {
+            inputs++;
+            decode(ByteBuffer.allocate(0), true);
+            decoder.flush(decoded);
+            drainDecoded();
+            cut(true);
+            decoder.reset();
+        }
+
+        private void decode(final ByteBuffer in, final boolean last)
+                throws IOException {
+            while (decoder.decode(in, decoded, last).isOverflow()) {
+                drainDecoded();
+                cut(false);
+            }
+            drainDecoded();
+            cut(false);
+        }
+
+        private void drainDecoded() {
+            decoded.flip();
+            pending.append(decoded);
+            decoded.clear();
+        }
+
+        /**
+         * Hands pending text to the pool a chunk at a time, and all of it if
+         * the input has ended.
+         */
+        private void cut(final boolean last) throws IOException {
+            int from = 0;
+            while (pending.length() - from >= chunkSize) {
+                final int to = findCut(from, last);
+                if (to < 0)
+                    break;
+                final String word = before;
+                before = cutBefore;
+                submit(pending.substring(from, to), word, cutAfter);
+                from = to;
+            }
+            if (last && from < pending.length()) {
+                submit(pending.substring(from), before, null);
+                from = pending.length();
+            }
+            if (last)
+                before = null;
+            pending.delete(0, from);
+        }
+
+        /**
+         * Finds where to end the chunk that starts at from, which starts a
+         * sentence: before the first token at or past from + chunkSize that
+         * follows the end of a sentence (as {@link Tagger#tagSentences}
+         * finds them) that {@link RuleSet#isCutPoint(short)} allows. Failing
+         * that, once a fallback window of text is pending, before the last
+         * token that starts in the window. Either way the token is apart
+         * from the one before it and complete: it does not reach the end of
+         * pending text that may go on. Sets {@link #cutBefore} and
+         * {@link #cutAfter} to the tokens either side.
+         *
+         * @return the offset of the token, or -1 if there is no cut yet
+         */
+        private int findCut(final int from, final boolean last) {
+            final int n = pending.length();
+            final int window = Math.max(4 * chunkSize, MIN_FALLBACK);
+            scanner.reset(pending, from, n);
+            int prevStart = -1, prevEnd = -1;
+            boolean cutPoint = false;
+            // tokens so far in the current sentence
+            int sentence = 0;
+            // the fallback cut, and the tokens either side of it
+            int fallback = -1, fallbackEnd = -1;
+            int fallbackPrevStart = -1, fallbackPrevEnd = -1;
+            while (scanner.next()) {
+                final int start = (int) scanner.start();
+                final int end = (int) scanner.end();
+                if (end == n && !last)
+                    break;
+                if (prevEnd >= 0 && start > prevEnd) {
+                    if (cutPoint && start >= from + chunkSize)
+                        return cutAt(prevStart, prevEnd, start, end);
+                    if (start < from + window) {
+                        fallback = start;
+                        fallbackEnd = end;
+                        fallbackPrevStart = prevStart;
+                        fallbackPrevEnd = prevEnd;
+                    }
+                }
+                cutPoint = false;
+                final int k = scanner.length() == 1
+                        ? SENTENCE_ENDS.indexOf(scanner.charAt(0)) : -1;
+                if (k >= 0) {
+                    cutPoint = cutPoints[k];
+                    sentence = 0;
+                } else if (++sentence == Tagger.MAX_SENTENCE) {
+                    cutPoint = tagger.rules().isCutPoint(FastTag.firstTag(
+                            tagger.lexicon(), word.set(pending, start, end)));
+                    sentence = 0;
+                }
+                prevStart = start;
+                prevEnd = end;
+            }
+            return fallback < 0 || n - from < window ? -1
+                    : cutAt(fallbackPrevStart, fallbackPrevEnd, fallback,
+                            fallbackEnd);
+        }
+
+        private int cutAt(final int prevStart, final int prevEnd,
+                final int start, final int end) {
+            cutBefore = pending.substring(prevStart, prevEnd);
+            cutAfter = pending.substring(start, end);
+            return start;
+        }
+
+        private void submit(final String text, final String prevWord,
+                final String nextWord) throws IOException {
+            checkWriter();
+            final Future<String> chunk = pool.submit(() -> {
+                final StringBuilder out = new StringBuilder(text.length() * 2);
+                tagger.tagSentences(new StringReader(text), prevWord,
+                        nextWord).forEach(s -> {
+                            sentences.increment();
+                            tokens.add(s.size());
+                            format.append(out, s);
+                        });
+                return out.toString();
+            });
+            try {
+                chunks.put(chunk);
+            } catch (final InterruptedException e) {
+                chunk.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted", e);
+            }
+        }
+
+        private void write(final WritableByteChannel out) {
+            final Writer w = new BufferedWriter(
+                    Channels.newWriter(out, StandardCharsets.UTF_8.newEncoder(),
+                            -1),
+                    1 << 16);
+            try {
+                for (Future<String> chunk; (chunk = chunks.take()) != end;)
+                    if (failure == null)
+                        try {
+                            w.write(chunk.get());
+                        } catch (final ExecutionException e) {
+                            failure = e.getCause();
+                        } catch (final IOException | RuntimeException e) {
+                            failure = e;
+                        }
+                    else
+                        // keep taking so the reader is never stuck
+                        chunk.cancel(true);
+                if (failure == null)
+                    w.flush();
+            } catch (final InterruptedException e) {
+                failure = e;
+            } catch (final IOException e) {
+                failure = e;
+            }
+        }
+
+        private void checkWriter() throws IOException {
+            final Throwable t = failure;
+            if (t == null)
+                return;
+            if (t instanceof IOException)
+                throw (IOException) t;
+            if (t instanceof RuntimeException)
+                throw (RuntimeException) t;
+            if (t instanceof Error)
+                throw (Error) t;
+            throw new IOException(t);
+        }
+
+        Summary finish() throws IOException {
+            stopWriter();
+            checkWriter();
+            return new Summary(inputs, bytes, sentences.sum(), tokens.sum(),
+                    System.nanoTime() - start);
+        }
+
+        private void stopWriter() throws IOException {
+            if (!writer.isAlive())
+                return;
+            try {
+                chunks.put(end);
+                writer.join();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted", e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                stopWriter();
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    private static void usage() {
+        System.err.println("Usage: BulkTagger [options] [file or directory ...]\n"
+                + "  -f tagged|tsv|conll  output format (default tagged)\n"
+                + "  -l lexicon           text lexicon, or one compiled by"
+                + " LexiconCompiler\n"
+                + "                       (default: the bundled lexicon.txt)\n"
+                + "  -r rules             rules file (default: the bundled"
+                + " rules.txt)\n"
+                + "  -o file              write here instead of standard"
+                + " output\n"
+                + "  -t workers           tagging threads (default: one per"
+                + " processor)\n"
+                + "With no files, or \"-\", standard input is tagged."
+                + " Directories are tagged\n"
+                + "recursively in name order. A summary goes to standard"
+                + " error.");
+    }
+
+    private static String value(final String[] args, final int option) {
+        if (option + 1 == args.length)
+            throw new IllegalArgumentException(args[option] + " needs a value");
+        return args[option + 1];
+    }
+
+    private static Format format(final String name) {
+        for (final Format f : Format.values())
+            if (f.name().equalsIgnoreCase(name))
+                return f;
+        throw new IllegalArgumentException("unknown format " + name);
+    }
+
+    /**
+     * Usage: BulkTagger [-f tagged|tsv|conll] [-l lexicon] [-r rules]
+     * [-o file] [-t workers] [file or directory ...]
+     */
+    public static void main(final String[] args) {
+        Format format = Format.TAGGED;
+        String lexicon = null, rules = null, output = null;
+        int workers = Runtime.getRuntime().availableProcessors();
+        final List<Path> inputs = new ArrayList<>();
+        boolean stdin = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                final String arg = args[i];
+                if (arg.equals("-"))
+                    stdin = true;
+                else if (!arg.startsWith("-"))
+                    inputs.add(Paths.get(arg));
+                else if (arg.equals("-f"))
+                    format = format(value(args, i++));
+                else if (arg.equals("-l"))
+                    lexicon = value(args, i++);
+                else if (arg.equals("-r"))
+                    rules = value(args, i++);
+                else if (arg.equals("-o"))
+                    output = value(args, i++);
+                else if (arg.equals("-t")) {
+                    workers = Integer.parseInt(value(args, i++));
+                    if (workers < 1)
+                        throw new IllegalArgumentException(
+                                "-t needs at least one worker");
+                } else
+                    throw new IllegalArgumentException("unknown option " + arg);
+            }
+            if (stdin && !inputs.isEmpty())
+                throw new IllegalArgumentException(
+                        "\"-\" cannot be mixed with files");
+        } catch (final IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            usage();
+            System.exit(2);
+            return;
+        }
+
+        // before -o truncates anything
+        final List<Path> needed = new ArrayList<>(inputs);
+        if (lexicon != null)
+            needed.add(Paths.get(lexicon));
+        if (rules != null)
+            needed.add(Paths.get(rules));
+        for (final Path path : needed)
+            if (!Files.exists(path))
+                fail("no such file: " + path);
+
+        final Summary summary;
+        try {
+            Tagger tagger = lexicon == null ? Tagger.getDefault()
+                    : LexiconCompiler.isCompiled(lexicon)
+                            ? Tagger.fromCompiled(lexicon)
+                            : Tagger.fromText(lexicon);
+            if (rules != null)
+                tagger = tagger.withRules(RuleSet.load(rules));
+            final BulkTagger bulk = new BulkTagger(tagger)
+                    .withFormat(format).withWorkers(workers);
+            try (FileChannel out = output == null
+                    ? new FileOutputStream(FileDescriptor.out).getChannel()
+                    : FileChannel.open(Paths.get(output),
+                            StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE,
+                            StandardOpenOption.TRUNCATE_EXISTING)) {
+                summary = inputs.isEmpty()
+                        ? bulk.tag(new FileInputStream(FileDescriptor.in)
+                                .getChannel(), out)
+                        : bulk.tag(inputs, out);
+            }
+        } catch (final IOException e) {
+            fail(message(e));
+            return;
+        } catch (final UncheckedIOException e) {
+            fail(message(e.getCause()));
+            return;
+        } catch (final IllegalArgumentException
+                | IllegalStateException e) {
+            // a malformed lexicon or rules file, or no default rules
+            fail(e.getMessage());
+            return;
+        }
+        System.err.println(summary);
+    }
+
+    private static String message(final IOException e) {
+        if (e instanceof NoSuchFileException)
+            return "no such file: " + e.getMessage();
+        if (e instanceof AccessDeniedException)
+            return "permission denied: " + e.getMessage();
+        return e.getMessage() != null ? e.getMessage() : e.toString();
+    }
+
+    private static void fail(final String message) {
+        System.err.println("BulkTagger: " + message);
+        System.exit(1);
+    }
+}
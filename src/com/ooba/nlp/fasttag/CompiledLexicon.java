@@ -0,0 +1,359 @@
+package com.ooba.nlp.fasttag;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.IntFunction;
+
+import com.ooba.nlp.util.TagIds;
+
+/**
+ * A read-only lexicon in the format written by {@link LexiconCompiler}, kept
+ * outside the Java heap.
+ * <p/>
+ * {@link #open(String)} memory-maps a compiled file, so opening it costs a
+ * header read instead of a parse, and every process mapping the same file
+ * shares one page-cached copy. {@link #of(Map)} and {@link #fromText(String)}
+ * compile into a direct buffer instead, for when there is no file to map,
+ * and {@link #read(InputStream)} copies in a compiled one, say from a jar.
+ * Either way keys and entries never become heap objects: the heap holds only
+ * the tag strings and the few thousand distinct tag sequences, which lookups
+ * return shared (callers must not modify them), so a full GC has almost
+ * nothing to trace and a lookup allocates nothing. Only absolute buffer reads
+ * are used, so a single instance can be shared between threads.
+ */
+public final class CompiledLexicon extends AbstractMap<String, String[]> {
+    private final ByteBuffer buf;
+    private final String[]   tags;
+    // distinct tag sequences, by index
+    private final String[][] sequences;
+    private final short[][]  sequenceIds;
+    private final int        guessesStart;
+    private final int        size;
+    private final int        mask;
+    private final int        slotsStart;
+    private final int        entriesStart;
+
+    CompiledLexicon(final ByteBuffer buf) {
+        this.buf = buf;
+        if (buf.limit() < LexiconCompiler.HEADER
+                || buf.getInt(0) != LexiconCompiler.MAGIC)
+            throw new IllegalArgumentException("Not a compiled lexicon");
+        if (buf.getInt(4) != LexiconCompiler.VERSION)
+            throw new IllegalArgumentException(
+                    "Unsupported compiled lexicon version " + buf.getInt(4)
+                            + "; recompile it with LexiconCompiler");
+        tags = new String[buf.getInt(8)];
+        sequences = new String[buf.getInt(12)][];
+        sequenceIds = new short[sequences.length][];
+        size = buf.getInt(16);
+        final int slotCount = buf.getInt(20);
+        mask = slotCount - 1;
+
+        int pos = LexiconCompiler.HEADER;
+        for (int i = 0; i < tags.length; i++) {
+            final int len = buf.getShort(pos) & 0xFFFF;
+            tags[i] = decode(pos + Short.BYTES, len);
+            pos += Short.BYTES + len;
+        }
+        final short[] tagIds = TagIds.ids(tags);
+        for (int s = 0; s < sequences.length; s++) {
+            final int n = buf.get(pos++) & 0xFF;
+            sequences[s] = new String[n];
+            sequenceIds[s] = new short[n];
+            for (int i = 0; i < n; i++, pos += Short.BYTES) {
+                final int tag = buf.getShort(pos) & 0xFFFF;
+                sequences[s][i] = tags[tag];
+                sequenceIds[s][i] = tagIds[tag];
+            }
+        }
+        guessesStart = pos;
+        slotsStart = pos + UnknownWordModel.SIZE * Short.BYTES;
+        entriesStart = slotsStart + slotCount * Integer.BYTES;
+    }
+
+    /**
+     * Maps the compiled lexicon at path read-only.
+     *
+     * @param path
+     *            file produced by {@link LexiconCompiler}
+     */
+    public static CompiledLexicon open(final String path) throws IOException {
+        try (FileChannel ch = FileChannel.open(Paths.get(path),
+                StandardOpenOption.READ)) {
+            return new CompiledLexicon(
+                    ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+        }
+    }
+
+    /**
+     * Compiles lexicon into a direct buffer.
+     */
+    public static CompiledLexicon of(final Map<String, String[]> lexicon) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            LexiconCompiler.write(lexicon, out);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return direct(out.toByteArray(), out.size());
+    }
+
+    /**
+     * Reads a compiled lexicon from in, such as a classpath resource, into
+     * a direct buffer. in is read to the end but not closed.
+     *
+     * @throws IllegalArgumentException
+     *             if in does not hold a compiled lexicon
+     */
+    public static CompiledLexicon read(final InputStream in)
+            throws IOException {
+        final ByteBuffer bytes = LexiconLoader.read(in);
+        return direct(bytes.array(), bytes.limit());
+    }
+
+    private static CompiledLexicon direct(final byte[] bytes,
+            final int length) {
+        final ByteBuffer buf = ByteBuffer.allocateDirect(length);
+        buf.put(bytes, 0, length).flip();
+        return new CompiledLexicon(buf.asReadOnlyBuffer());
+    }
+
+    /**
+     * Reads a text lexicon (lexicon.txt, medical_plus_regular_lexicon.txt)
+     * into a direct buffer; the parsed map is garbage once this returns.
+     */
+    public static CompiledLexicon fromText(final String path)
+            throws IOException {
+        return of(LexiconCompiler.readText(path));
+    }
+
+    private String decode(final int pos, final int len) {
+        final byte[] bytes = new byte[len];
+        for (int i = 0; i < len; i++)
+            bytes[i] = buf.get(pos + i);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static char charAt(final CharSequence s, final int i,
+            final boolean lower) {
+        final char c = s.charAt(i);
+        return lower ? Character.toLowerCase(c) : c;
+    }
+
+    private static int hash(final CharSequence s, final boolean lower) {
+        if (s instanceof String && !lower)
+            return s.hashCode();
+        int h = 0;
+        for (int i = 0, n = s.length(); i < n; i++)
+            h = 31 * h + charAt(s, i, lower);
+        return h;
+    }
+
+    /**
+     * Compares the UTF-8 key stored at pos against s (lower-cased char by
+     * char if lower is set) without decoding it.
+     */
+    private boolean keyEquals(final int pos, final int len,
+            final CharSequence s, final boolean lower) {
+        int b = pos;
+        final int end = pos + len;
+        int c = 0;
+        final int n = s.length();
+        while (b < end) {
+            if (c >= n)
+                return false;
+            final int b0 = buf.get(b) & 0xFF;
+            int cp;
+            if (b0 < 0x80) {
+                cp = b0;
+                b += 1;
+            } else if (b0 < 0xE0) {
+                cp = ((b0 & 0x1F) << 6) | (buf.get(b + 1) & 0x3F);
+                b += 2;
+            } else if (b0 < 0xF0) {
+                cp = ((b0 & 0x0F) << 12) | ((buf.get(b + 1) & 0x3F) << 6)
+                        | (buf.get(b + 2) & 0x3F);
+                b += 3;
+            } else {
+                cp = ((b0 & 0x07) << 18) | ((buf.get(b + 1) & 0x3F) << 12)
+                        | ((buf.get(b + 2) & 0x3F) << 6)
+                        | (buf.get(b + 3) & 0x3F);
+                b += 4;
+            }
+            if (Character.isSupplementaryCodePoint(cp)) {
+                if (c + 1 >= n
+                        || charAt(s, c, lower) != Character.highSurrogate(cp)
+                        || charAt(s, c + 1, lower) != Character.lowSurrogate(
+                                cp))
+                    return false;
+                c += 2;
+            } else if (charAt(s, c++, lower) != cp)
+                return false;
+        }
+        return c == n;
+    }
+
+    /**
+     * @return offset of the entry for s, or -1 if s is not in the lexicon
+     */
+    int find(final CharSequence s) {
+        return find(s, false);
+    }
+
+    /**
+     * @return offset of the entry for s, lower-cased char by char if lower
+     *         is set, or -1 if it is not in the lexicon
+     */
+    private int find(final CharSequence s, final boolean lower) {
+        int slot = LexiconCompiler.spread(hash(s, lower)) & mask;
+        while (true) {
+            final int off = buf.getInt(slotsStart + slot * Integer.BYTES);
+            if (off < 0)
+                return -1;
+            final int pos = entriesStart + off;
+            final int len = buf.getShort(pos) & 0xFFFF;
+            if (keyEquals(pos + Short.BYTES, len, s, lower))
+                return pos;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private int entryLength(final int pos) {
+        return Short.BYTES + (buf.getShort(pos) & 0xFFFF) + Short.BYTES;
+    }
+
+    private int sequenceAt(final int pos) {
+        return buf.getShort(pos + Short.BYTES + (buf.getShort(pos) & 0xFFFF))
+                & 0xFFFF;
+    }
+
+    private String[] tagsAt(final int pos) {
+        return sequences[sequenceAt(pos)];
+    }
+
+    private short[] tagIdsAt(final int pos) {
+        return sequenceIds[sequenceAt(pos)];
+    }
+
+    /**
+     * @return the guesses {@link LexiconCompiler} trained on this lexicon
+     */
+    private UnknownWordModel model() {
+        final short[] tagIds = TagIds.ids(tags);
+        final short[] guesses = new short[UnknownWordModel.SIZE];
+        for (int i = 0; i < guesses.length; i++)
+            guesses[i] = tagIds[buf.getShort(guessesStart + i * Short.BYTES)
+                    & 0xFFFF];
+        return new UnknownWordModel(guesses);
+    }
+
+    /**
+     * @return a view of this lexicon with tags as {@link TagIds} ids, sharing
+     *         the same buffer
+     */
+    public Lexicon ids() {
+        return new Lexicon() {
+            @Override
+            public short[] get(final CharSequence word) {
+                final int pos = find(word, false);
+                return pos < 0 ? null : tagIdsAt(pos);
+            }
+
+            @Override
+            public short[] getLowerCase(final CharSequence word) {
+                final int pos = find(word, true);
+                return pos < 0 ? null : tagIdsAt(pos);
+            }
+
+            @Override
+            public Lexicon withGuesses() {
+                return new GuessingLexicon(this, model());
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public void forEach(
+                    final BiConsumer<? super String, ? super short[]> action) {
+                for (final Entry<String, short[]> e : entries(
+                        CompiledLexicon.this::tagIdsAt))
+                    action.accept(e.getKey(), e.getValue());
+            }
+        };
+    }
+
+    @Override
+    public String[] get(final Object key) {
+        if (!(key instanceof CharSequence))
+            return null;
+        final int pos = find((CharSequence) key);
+        return pos < 0 ? null : tagsAt(pos);
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return key instanceof CharSequence && find((CharSequence) key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Entry<String, String[]>> entrySet() {
+        return entries(this::tagsAt);
+    }
+
+    private <V> Set<Entry<String, V>> entries(final IntFunction<V> valueAt) {
+        return new AbstractSet<Entry<String, V>>() {
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public Iterator<Entry<String, V>> iterator() {
+                return new Iterator<Entry<String, V>>() {
+                    private int pos  = entriesStart;
+                    private int seen = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return seen < size;
+                    }
+
+                    @Override
+                    public Entry<String, V> next() {
+                        if (!hasNext())
+                            throw new NoSuchElementException();
+                        final int len = buf.getShort(pos) & 0xFFFF;
+                        final Entry<String, V> e = new SimpleImmutableEntry<>(
+                                decode(pos + Short.BYTES, len),
+                                valueAt.apply(pos));
+                        pos += entryLength(pos);
+                        seen++;
+                        return e;
+                    }
+                };
+            }
+        };
+    }
+}
@@ -7,7 +7,7 @@ package com.ooba.nlp.fasttag;
 
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.UncheckedIOException;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -15,11 +15,11 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.function.Function;
 import java.util.function.UnaryOperator;
-import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
+import com.ooba.nlp.util.POS;
+import com.ooba.nlp.util.TagIds;
 import com.ooba.nlp.util.Tokenizer;
 import com.ooba.nlp.util.Util;
 
@@ -31,8 +31,8 @@ import pair.Pair;
  * <p/>
  */
 public final class FastTag {
-
-    private static final Map<String, String[]> lexicon = buildLexicon();
+    /** Name of the default lexicon, as a classpath resource and a file. */
+    static final String DEFAULT_LEXICON = "lexicon.txt";
 
     /**
      *
@@ -42,110 +42,296 @@ public final class FastTag {
     public static boolean wordInLexicon(final Map<String, String[]> lexicon,
             final String word) {
         return lexicon.containsKey(word)
-                || lexicon.containsKey(word.toLowerCase());
+                || PerfectHashLexicon.hasUpperCase(word)
+                        && lexicon.containsKey(word.toLowerCase());
+    }
+
+    public static boolean wordInLexicon(final Lexicon lexicon,
+            final String word) {
+        return lexicon.contains(word);
     }
 
+    /**
+     * @return the tags for word, or for its lower-case form if word itself
+     *         is not listed; the lower-case copy is only made on a miss
+     */
     public static String[] getWordFromLexicon(
             final Map<String, String[]> lexicon, final String word) {
-        return lexicon.getOrDefault(word, lexicon.get(word.toLowerCase()));
+        final String[] tags = lexicon.get(word);
+        return tags != null || !PerfectHashLexicon.hasUpperCase(word) ? tags
+                : lexicon.get(word.toLowerCase());
     }
 
-    // The following is a list of rules through which we run the sequence of
-    // words.
-
-    // rule 0: if it exists in the lexicon, assign the first provided tag.
-    // otherwise, if it is length 1, call it unknown, if not, call it a noun.
-    private static Function<Pair<String, String[]>, Pair<String, String>> rule_0 = p -> {
-        final String[] ss = p.right;
-        String res;
-        if (ss == null)
-            if (p.left.length() == 1)
-                res = "^";
-            else
-                res = "NN";
-        else
-            res = ss[0];
-        return p.mapRight(res);
-    };
-
-    // rule 1: DT, {VBD | VBP} --> DT, NN
-    private static UnaryOperator<Pair<String, String>> rule_1() {
-        final ArrayBlockingQueue<String> window = new ArrayBlockingQueue<>(2);
-        final String[] verbs = { "VBD", "VBP", "VB" };
-        return p -> {
-            window.add(p.right);
-            return Util.onlyIf(
-                    pair -> (window.size() == 2 && window.remove().equals("DT")
-                            && Util.arrayContains(verbs, pair.right)),
-                    Pair.F.replaceRight("NN"), p);
-        };
+    // Rule 0 gives each word the first tag the lexicon lists for it (see
+    // firstTag). Rules 1-8, and any rules added after them, are data: a
+    // RuleSet read from rules.txt.
+
+    /**
+     *
+     * @param words
+     *            list of strings to tag with parts of speech
+     * @return list of strings for part of speech tokens
+     */
+    public static List<String> tag(final Map<String, String[]> lexicon,
+            final List<String> words) {
+        final String[] ws = words.toArray(new String[words.size()]);
+        final String[] tags = tagSentence(lexicon, ws);
+        final List<String> res = new ArrayList<>(ws.length);
+        for (int i = 0; i < ws.length; i++)
+            res.add(ws[i] + "/" + tags[i]);
+        return res;
+    }
+
+    private static final short NN      = POS.NN.id();
+    private static final short UNKNOWN = POS.UNKNOWN.id();
+
+    /** Stands in for the tag before the start of text. */
+    public static final short  NO_TAG  = -1;
+
+    /**
+     * Tags a whole sentence in one pass with the default rules. Rules run on
+     * each word in order and read the words around it and their tags by
+     * index, so no per-word state has to be carried between calls.
+     *
+     * @param lexicon
+     * @param words
+     *            the tokens of one sentence (or any longer run of text)
+     * @return the tag for each word, parallel to words
+     */
+    public static String[] tagSentence(final Map<String, String[]> lexicon,
+            final String[] words) {
+        final short[] tags = new short[words.length];
+        for (int i = 0; i < words.length; i++) {
+            final String[] ss = getWordFromLexicon(lexicon, words[i]);
+            tags[i] = ss == null || ss.length == 0 ? defaultTag(words[i])
+                    : TagIds.id(ss[0]);
+        }
+        RuleSet.getDefault().apply(words, tags, null, 0, words.length, null,
+                NO_TAG, null, NO_TAG, null);
+        return TagIds.names(tags);
     }
 
-    // rule 2: convert a noun to a number (CD) if "." appears in the word
-    private static UnaryOperator<Pair<String, String>> rule_2 = Util.onlyIf(
-            pair -> (pair.right.startsWith("N") && (pair.left.contains(".")
-                    || Util.containsFloat(pair.left))),
-            Pair.F.replaceRight("CD"));
-
-    // rule 3: convert a noun to a past participle if words.get(i) ends with
-    // "ed"
-    private static UnaryOperator<Pair<String, String>> rule_3 = Util.onlyIf(
-            pair -> (pair.right.startsWith("N") && pair.left.endsWith("ed")),
-            Pair.F.replaceRight("VBN"));
-
-    // rule 4: convert any type to adverb if it ends in "ly";
-    private static UnaryOperator<Pair<String, String>> rule_4 = Util.onlyIf(
-            pair -> pair.left.endsWith("ly"), Pair.F.replaceRight("RB"));
-
-    // rule 5: convert a common noun (NN or NNS) to a adjective if it ends with
-    // "al"
-    private static UnaryOperator<Pair<String, String>> rule_5 = Util.onlyIf(
-            pair -> (pair.right.startsWith("NN") && pair.left.endsWith("al")),
-            Pair.F.replaceRight("JJ"));
-
-    // rule 6: convert a noun to a verb if the preceeding work is "would"
-    private static UnaryOperator<Pair<String, String>> rule_6() {
-        final ArrayBlockingQueue<String> window = new ArrayBlockingQueue<>(2);
-        return p -> {
-            window.add(p.left);
-            return Util.onlyIf(
-                    pair -> (window.size() == 2 && p.right.startsWith("NN")
-                            && window.remove().equalsIgnoreCase("would")),
-                    Pair.F.replaceRight("VB"), p);
-        };
+    /**
+     * Same as {@link #tagSentence(Map, String[])}, over a {@link Lexicon}.
+     *
+     * @param lexicon
+     * @param words
+     *            the tokens of one sentence (or any longer run of text)
+     * @return the tag id for each word, parallel to words
+     */
+    public static short[] tagIds(final Lexicon lexicon,
+            final String[] words) {
+        return tagIds(lexicon, words, null, NO_TAG);
     }
 
-    // rule 7: if a word has been categorized as a common noun and it ends with
-    // "s",
-    // then set its type to plural common noun (NNS)
-    private static UnaryOperator<Pair<String, String>> rule_7 = Util.onlyIf(
-            pair -> (pair.right.equals("NN") && pair.left.endsWith("s")),
-            Pair.F.replaceRight("NNS"));
+    /**
+     * Tags words that directly follow already tagged text, so that rules
+     * looking at the previous word or tag see across the join.
+     *
+     * @param lexicon
+     * @param words
+     *            the next tokens of the text
+     * @param prevWord
+     *            the token just before words, or null at the start of text
+     * @param prevTag
+     *            the final tag id of prevWord, or {@link #NO_TAG}
+     * @return the tag id for each word, parallel to words
+     */
+    public static short[] tagIds(final Lexicon lexicon,
+            final String[] words, final String prevWord, final short prevTag) {
+        return tagIds(lexicon, RuleSet.getDefault(), null, words, prevWord,
+                prevTag, null);
+    }
 
-    // rule 8: convert a common noun to a present participle verb (i.e., a
-    // gerand)
-    private static UnaryOperator<Pair<String, String>> rule_8 = Util.onlyIf(
-            pair -> (pair.right.equals("NN") && pair.left.endsWith("ing")),
-            Pair.F.replaceRight("VBG"));
+    /**
+     * Tags words in the middle of a text with the given rules, looking each
+     * token up in cache first.
+     *
+     * @param rules
+     *            the rules to apply after rule 0
+     * @param cache
+     *            per-token results to reuse and fill, or null for none; it
+     *            must only ever be used with these rules
+     * @param prevWord
+     *            the token just before words, or null at the start of text
+     * @param prevTag
+     *            the final tag id of prevWord, or {@link #NO_TAG}
+     * @param nextWord
+     *            the token just after words, or null at the end of text
+     * @return the tag id for each word, parallel to words
+     */
+    public static short[] tagIds(final Lexicon lexicon, final RuleSet rules,
+            final TokenCache cache, final String[] words,
+            final String prevWord, final short prevTag,
+            final String nextWord) {
+        return tagIds(lexicon, rules, cache, null, words, prevWord, prevTag,
+                nextWord);
+    }
+
+    static short[] tagIds(final Lexicon lexicon, final RuleSet rules,
+            final TokenCache cache, final TaggerMetrics metrics,
+            final String[] words, final String prevWord, final short prevTag,
+            final String nextWord) {
+        final short[] tags = new short[words.length];
+        tagRange(lexicon, rules, cache, metrics, words, tags, null, 0,
+                words.length, prevWord, prevTag, nextWord);
+        return tags;
+    }
 
     /**
+     * Tags a long document on the common fork-join pool. The words are cut
+     * into chunks of at least minChunk tokens at sentence boundaries (see
+     * {@link #chunkStarts(Lexicon, RuleSet, String[], int)}) and the chunks
+     * are tagged in parallel into one result array, so the output is
+     * identical to {@link #tagIds(Lexicon, String[])}.
      *
+     * @param lexicon
      * @param words
-     *            list of strings to tag with parts of speech
-     * @return list of strings for part of speech tokens
+     *            the tokens of a whole document
+     * @param minChunk
+     *            smallest number of tokens worth handing to one task
+     * @return the tag id for each word, parallel to words
      */
-    public static List<String> tag(final Map<String, String[]> lexicon,
-            final List<String> words) {
-        return words.stream().sequential().map(FastTag.tag(lexicon)).collect(
-                Collectors.toList());
+    public static short[] tagIdsParallel(final Lexicon lexicon,
+            final String[] words, final int minChunk) {
+        return tagIdsParallel(lexicon, RuleSet.getDefault(), null, words,
+                minChunk);
+    }
+
+    /**
+     * Same as {@link #tagIdsParallel(Lexicon, String[], int)}, with the
+     * given rules and looking each token up in cache first.
+     *
+     * @param cache
+     *            per-token results to reuse and fill, or null for none
+     */
+    public static short[] tagIdsParallel(final Lexicon lexicon,
+            final RuleSet rules, final TokenCache cache, final String[] words,
+            final int minChunk) {
+        return tagIdsParallel(lexicon, rules, cache, null, words, minChunk);
+    }
+
+    static short[] tagIdsParallel(final Lexicon lexicon, final RuleSet rules,
+            final TokenCache cache, final TaggerMetrics metrics,
+            final String[] words, final int minChunk) {
+        final short[] tags = new short[words.length];
+        final int[] starts = chunkStarts(lexicon, rules, words, minChunk);
+        IntStream.range(0, starts.length - 1)
+                 .parallel()
+                 .forEach(c -> {
+                     final int from = starts[c], to = starts[c + 1];
+                     tagRange(lexicon, rules, cache, metrics, words, tags,
+                             null, from, to,
+                             from > 0 ? words[from - 1] : null, NO_TAG,
+                             to < words.length ? words[to] : null);
+                 });
+        return tags;
+    }
+
+    /**
+     * Finds where a document can be cut so that each piece tags the same on
+     * its own as it does in place. A piece may start right after a sentence
+     * final ".", "?" or "!" that {@link RuleSet#isCutPoint(short)} allows:
+     * no rule can give that token a final tag that a PREVTAG condition
+     * looks for, so the next token tags the same whether or not it sees it.
+     * Rules that read neighbouring words, or the next token's rule 0 tag,
+     * can still read them across the cut.
+     *
+     * @return chunk start indexes, followed by words.length
+     */
+    static int[] chunkStarts(final Lexicon lexicon, final RuleSet rules,
+            final String[] words, final int minChunk) {
+        final List<Integer> starts = new ArrayList<>();
+        starts.add(0);
+        int last = 0;
+        for (int i = 0; i < words.length - 1; i++)
+            if (i + 1 - last >= minChunk && isSentenceEnd(words[i])
+                    && rules.isCutPoint(firstTag(lexicon, words[i]))) {
+                last = i + 1;
+                starts.add(last);
+            }
+        starts.add(words.length);
+        return starts.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    static boolean isSentenceEnd(final String word) {
+        return word.equals(".") || word.equals("?") || word.equals("!");
+    }
+
+    /**
+     * Tags words[from, to) into tags[from, to). prevWord and prevTag stand
+     * in for the token before from, nextWord for the token at to. With a
+     * cache, each token's rule 0 tag and word tests come from the cache when
+     * they can and are added to it when they cannot. The word tests are
+     * kept in scratch meanwhile, which must hold at least to - from ints,
+     * or is allocated when null. metrics, when not null, counts the tokens,
+     * lexicon misses and rule firings.
+     */
+    static void tagRange(final Lexicon lexicon, final RuleSet rules,
+            final TokenCache cache, final TaggerMetrics metrics,
+            final CharSequence[] words, final short[] tags,
+            final int[] scratch, final int from, final int to,
+            final CharSequence prevWord, final short prevTag,
+            final CharSequence nextWord) {
+        int[] shapes = null;
+        if (cache == null)
+            for (int i = from; i < to; i++)
+                tags[i] = firstTag(lexicon, words[i], metrics);
+        else {
+            shapes = scratch != null ? scratch : new int[to - from];
+            for (int i = from; i < to; i++) {
+                // the cache is keyed on Strings; toString() is free for them
+                final String word = words[i].toString();
+                int entry = cache.get(word);
+                if (entry == TokenCache.MISS) {
+                    final short[] ss = lexicon.lookup(word);
+                    final boolean unknown = ss == null || ss.length == 0;
+                    entry = TokenCache.pack(
+                            unknown ? lexicon.guess(word) : ss[0],
+                            rules.shapeOf(word), unknown);
+                    cache.put(word, entry);
+                }
+                if (metrics != null && TokenCache.unknown(entry))
+                    metrics.lexiconMiss(word, TokenCache.tag(entry));
+                tags[i] = TokenCache.tag(entry);
+                shapes[i - from] = TokenCache.shape(entry);
+            }
+        }
+        if (metrics != null)
+            metrics.tokens(to - from);
+        final short nextTag = nextWord != null && rules.usesNextTag()
+                ? firstTag(lexicon, nextWord) : NO_TAG;
+        rules.apply(words, tags, shapes, from, to, prevWord, prevTag,
+                nextWord, nextTag, metrics);
+    }
+
+    static short firstTag(final Lexicon lexicon, final CharSequence word) {
+        return firstTag(lexicon, word, null);
+    }
+
+    private static short firstTag(final Lexicon lexicon,
+            final CharSequence word, final TaggerMetrics metrics) {
+        final short[] ss = lexicon.lookup(word);
+        if (ss != null && ss.length > 0)
+            return ss[0];
+        final short tag = lexicon.guess(word);
+        if (metrics != null)
+            metrics.lexiconMiss(word, tag);
+        return tag;
+    }
+
+    // rule 0, for words missing from the lexicon (or listed without tags):
+    // "^" for single chars, otherwise NN
+    static short defaultTag(final CharSequence word) {
+        return word.length() == 1 ? UNKNOWN : NN;
     }
 
     /**
      * Same as tag for List[String]s, but only operates on a single word, so
-     * that you can map it across a string[] or something if you want. MAKE SURE
-     * THIS RUNS SEQUENTIALLY, as it needs to preserve some information about
-     * its current context in the sentence, and that breaks if it runs in
-     * parallel.
+     * that you can map it across a string[] or something if you want. The
+     * word is tagged without any context, so rules that look at neighbouring
+     * words or tags never fire; use {@link #tagSentence(Map, String[])}
+     * when the surrounding words are available.
      *
      * @param lexicon
      * @param word
@@ -153,21 +339,7 @@ public final class FastTag {
      */
     public static String tag(final Map<String, String[]> lexicon,
             final String word) {
-        final UnaryOperator<Pair<String, String>> rule_1 = rule_1();
-        final UnaryOperator<Pair<String, String>> rule_6 = rule_6();
-        final Pair<String, String[]> pp = Pair.make(word,
-                getWordFromLexicon(lexicon, word));
-        Pair<String, String> p;
-        p = rule_0.apply(pp);
-        p = rule_1.apply(p);
-        p = rule_2.apply(p);
-        p = rule_3.apply(p);
-        p = rule_4.apply(p);
-        p = rule_5.apply(p);
-        p = rule_6.apply(p);
-        p = rule_7.apply(p);
-        p = rule_8.apply(p);
-        return p.intoFun((a, b) -> a + "/" + b);
+        return word + "/" + tagSentence(lexicon, new String[] { word })[0];
     }
 
     public static UnaryOperator<String> tag(
@@ -175,8 +347,20 @@ public final class FastTag {
         return w -> tag(lexicon, w);
     }
 
+    /**
+     * Reads lexicon.txt from the classpath, where the jar packages it, or
+     * else from the working directory.
+     *
+     * @throws UncheckedIOException
+     *             if it is in neither place or cannot be read
+     */
     public static Map<String, String[]> buildLexicon() {
-        return buildLexicon("lexicon.txt");
+        try {
+            return LexiconLoader.strings(
+                    LexiconLoader.bundled(DEFAULT_LEXICON), true);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     public static Pair<String, String[]> getTagsFromLine(final String line) {
@@ -184,17 +368,47 @@ public final class FastTag {
         return Pair.make(bits[0], Util.subarray(bits, 1));
     }
 
+    /**
+     * Converts a lexicon to a {@link Lexicon} that stores {@link TagIds} ids.
+     */
+    public static Lexicon toIdLexicon(final Map<String, String[]> lexicon) {
+        final Map<String, short[]> res = new HashMap<>(
+                lexicon.size() * 4 / 3 + 1);
+        lexicon.forEach((word, tags) -> res.put(word, TagIds.ids(tags)));
+        return Lexicon.of(res);
+    }
+
+    /**
+     * Parses the text lexicon at path in parallel (see
+     * {@link #buildLexicon(String)}).
+     *
+     * @throws UncheckedIOException
+     *             if path cannot be read
+     */
+    public static Lexicon buildIdLexicon(final String path) {
+        try {
+            return LexiconLoader.ids(LexiconLoader.map(Paths.get(path)));
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Parses the text lexicon at path, one entry per line split like
+     * {@link #getTagsFromLine(String)}. The file is parsed in chunks on the
+     * common ForkJoinPool. The map and every word's array are the caller's
+     * own to modify.
+     *
+     * @throws UncheckedIOException
+     *             if path cannot be read
+     */
     public static Map<String, String[]> buildLexicon(final String path) {
-        final Map<String, String[]> lexicon = new HashMap<>();
         try {
-            Files.lines(Paths.get(path))
-                 .filter(s -> s.contains(" "))
-                 .map(FastTag::getTagsFromLine)
-                 .forEach(Pair.F.intoCon(lexicon::put));
+            return LexiconLoader.strings(LexiconLoader.map(Paths.get(path)),
+                    true);
         } catch (final IOException e) {
-            e.printStackTrace();
+            throw new UncheckedIOException(e);
         }
-        return lexicon;
     }
 
     /*********************************
@@ -274,7 +488,7 @@ public final class FastTag {
     }
 
     /**
-     * Simple main test program
+     * Simple main test program; {@link BulkTagger} tags files
      *
      * @param args
      *            string to tokenize and tag
@@ -288,10 +502,10 @@ public final class FastTag {
         } else
             text = args[0];
 
-        final List<String> words = Tokenizer.wordsToList(text);
-        final List<String> tags = _tag(lexicon, words);
-        for (int i = 0; i < words.size(); i++)
-            System.out.println(words.get(i) + "/" + tags.get(i));
+        final TaggedSentence tagged = Tagger.getDefault().tagSentence(
+                Tokenizer.wordsToList(text).toArray(new String[0]));
+        for (int i = 0; i < tagged.size(); i++)
+            System.out.println(tagged.taggedWord(i));
     }
 
     @Deprecated
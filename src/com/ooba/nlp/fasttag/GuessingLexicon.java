@@ -0,0 +1,61 @@
+package com.ooba.nlp.fasttag;
+
+import java.util.function.BiConsumer;
+
+/**
+ * A lexicon that tags the words it does not list with an
+ * {@link UnknownWordModel} instead of NN; see {@link Lexicon#withGuesses()}.
+ * Lookups go straight to the wrapped lexicon.
+ */
+final class GuessingLexicon implements Lexicon {
+    private final Lexicon          lexicon;
+    private final UnknownWordModel model;
+
+    GuessingLexicon(final Lexicon lexicon, final UnknownWordModel model) {
+        this.lexicon = lexicon;
+        this.model = model;
+    }
+
+    /**
+     * @return lexicon, guessing with the same model as this
+     */
+    Lexicon over(final Lexicon lexicon) {
+        return new GuessingLexicon(lexicon, model);
+    }
+
+    @Override
+    public short[] get(final CharSequence word) {
+        return lexicon.get(word);
+    }
+
+    @Override
+    public short[] getLowerCase(final CharSequence word) {
+        return lexicon.getLowerCase(word);
+    }
+
+    @Override
+    public short[] lookup(final CharSequence word) {
+        return lexicon.lookup(word);
+    }
+
+    @Override
+    public short guess(final CharSequence word) {
+        return word.length() == 1 ? FastTag.defaultTag(word) : model.tag(word);
+    }
+
+    @Override
+    public Lexicon withGuesses() {
+        return this;
+    }
+
+    @Override
+    public int size() {
+        return lexicon.size();
+    }
+
+    @Override
+    public void forEach(
+            final BiConsumer<? super String, ? super short[]> action) {
+        lexicon.forEach(action);
+    }
+}
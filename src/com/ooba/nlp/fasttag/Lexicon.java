@@ -0,0 +1,116 @@
+package com.ooba.nlp.fasttag;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import com.ooba.nlp.util.TagIds;
+
+/**
+ * Read-only word to tag lookup used by the tagging engine. Tags are
+ * {@link TagIds} ids. Words are passed as CharSequences and are never
+ * copied, so a caller can probe with a token view instead of a String.
+ * <p/>
+ * Returned arrays are shared with the lexicon and must not be modified.
+ */
+public interface Lexicon {
+    /**
+     * @return the tag ids for word as spelled, or null if it is not listed
+     */
+    short[] get(CharSequence word);
+
+    /**
+     * Looks word up as if every char had been passed through
+     * {@link Character#toLowerCase(char)}, without building the lower-case
+     * copy.
+     *
+     * @return the tag ids for the lower-case form of word, or null
+     */
+    short[] getLowerCase(CharSequence word);
+
+    /**
+     * The lookup rule 0 uses: word as spelled, then its lower-case form. The
+     * second probe is skipped when lower-casing would not change word.
+     *
+     * @return the tag ids for word, or null if neither form is listed
+     */
+    default short[] lookup(final CharSequence word) {
+        final short[] tags = get(word);
+        return tags != null || !PerfectHashLexicon.hasUpperCase(word) ? tags
+                : getLowerCase(word);
+    }
+
+    /**
+     * Rule 0's tag for a word that is not listed (or is listed without
+     * tags): "^" for a single char, otherwise NN, unless this lexicon came
+     * from {@link #withGuesses()}.
+     *
+     * @return a tag id for word
+     */
+    default short guess(final CharSequence word) {
+        return FastTag.defaultTag(word);
+    }
+
+    /**
+     * Guessing is off by default, so that a lexicon tags the same whether
+     * it is read from text, compiled or built from a map. The lexicon
+     * returned here guesses the tag of an unlisted word longer than one char
+     * from its last three letters and its shape (capitalized, hyphenated,
+     * with digits): the guess is the most common first tag among the listed
+     * words alike in both. The table of guesses is worked out from this
+     * lexicon's words once, here, or read back from a compiled lexicon, so a
+     * guess costs one array read.
+     *
+     * @return this lexicon, guessing the tags of the words it does not list
+     */
+    default Lexicon withGuesses() {
+        return new GuessingLexicon(this, UnknownWordModel.train(this));
+    }
+
+    /**
+     * @return true if word or its lower-case form is listed
+     */
+    default boolean contains(final CharSequence word) {
+        return lookup(word) != null;
+    }
+
+    int size();
+
+    /**
+     * Calls action with every word and its tag ids, in no particular order.
+     */
+    void forEach(BiConsumer<? super String, ? super short[]> action);
+
+    /**
+     * @param entries
+     *            word to tag ids; it is copied
+     * @return an immutable lexicon holding entries in a minimal perfect hash
+     */
+    static Lexicon of(final Map<String, short[]> entries) {
+        return PerfectHashLexicon.build(entries);
+    }
+
+    /**
+     * Merges lexicons into one, so that a word is still found with a single
+     * lookup however many layers there are.
+     *
+     * @param layers
+     *            from the most general (a base lexicon) to the most specific
+     *            (say domain, then customer overrides); a word listed in
+     *            several layers takes its tags from the last of them
+     * @return an immutable lexicon holding every word of every layer; it
+     *         guesses unlisted words like the first layer if that came from
+     *         {@link #withGuesses()}
+     */
+    static Lexicon layered(final Lexicon... layers) {
+        int size = 0;
+        for (final Lexicon layer : layers)
+            size += layer.size();
+        final Map<String, short[]> entries = new HashMap<>(size * 4 / 3 + 1);
+        for (final Lexicon layer : layers)
+            layer.forEach(entries::put);
+        final Lexicon merged = of(entries);
+        return layers.length > 0 && layers[0] instanceof GuessingLexicon
+                ? ((GuessingLexicon) layers[0]).over(merged) : merged;
+    }
+}
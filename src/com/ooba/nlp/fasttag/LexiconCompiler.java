@@ -0,0 +1,184 @@
+package com.ooba.nlp.fasttag;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns a text lexicon (lexicon.txt, medical_plus_regular_lexicon.txt) into
+ * the binary format read by {@link CompiledLexicon}.
+ * <p/>
+ * Layout (all integers big-endian):
+ *
+ * <pre>
+ * int    magic, version, tagCount, sequenceCount, entryCount, slotCount
+ * tags      tagCount x (u16 byteLength, UTF-8 bytes)
+ * sequences sequenceCount x (u8 n, n x u16 tag id)
+ * guesses   UnknownWordModel.SIZE x u16 tag id
+ * slots     slotCount x int   (offset into entries, -1 if empty)
+ * entries                     (u16 byteLength, UTF-8 key, u16 sequence)
+ * </pre>
+ *
+ * Entries are written in sorted key order; slots form an open-addressing
+ * table keyed on {@link String#hashCode()} with linear probing. A lexicon
+ * has far fewer distinct tag sequences than words (about a thousand for
+ * ninety thousand words), so each sequence is stored once and entries
+ * refer to it by index. The guesses are the {@link UnknownWordModel} trained
+ * on the lexicon, for {@link Lexicon#withGuesses()} to read back instead of
+ * training again.
+ */
+public final class LexiconCompiler {
+    static final int MAGIC   = 0x46544C58; // "FTLX"
+    static final int VERSION = 3;
+    static final int HEADER  = 6 * Integer.BYTES;
+
+    private LexiconCompiler() {}
+
+    /**
+     * Mixes a String hash the same way on both the writing and the reading
+     * side.
+     */
+    static int spread(final int h) {
+        return h ^ (h >>> 16);
+    }
+
+    static int slotCountFor(final int entries) {
+        int n = 16;
+        while (n < entries * 2)
+            n <<= 1;
+        return n;
+    }
+
+    /**
+     * Parses a text lexicon exactly like {@link FastTag#buildLexicon(String)}
+     * does, but lets I/O errors escape as checked exceptions.
+     */
+    static Map<String, String[]> readText(final String path)
+            throws IOException {
+        return LexiconLoader.strings(LexiconLoader.map(Paths.get(path)),
+                false);
+    }
+
+    /**
+     * @return true if path starts like a file written by this class
+     */
+    static boolean isCompiled(final String path) throws IOException {
+        try (FileChannel ch = FileChannel.open(Paths.get(path),
+                StandardOpenOption.READ)) {
+            final ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES);
+            while (magic.hasRemaining() && ch.read(magic) >= 0)
+                ;
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * @param textPath
+     *            text lexicon to read
+     * @param binaryPath
+     *            where to write the compiled lexicon
+     */
+    public static void compile(final String textPath, final String binaryPath)
+            throws IOException {
+        try (OutputStream out = Files.newOutputStream(Paths.get(binaryPath))) {
+            write(readText(textPath), out);
+        }
+    }
+
+    public static void write(final Map<String, String[]> lexicon,
+            final OutputStream os) throws IOException {
+        final String[] keys = lexicon.keySet().toArray(new String[0]);
+        Arrays.sort(keys);
+
+        final Map<String, Integer> tagIds = new LinkedHashMap<>();
+        for (final String key : keys)
+            for (final String tag : lexicon.get(key))
+                tagIds.putIfAbsent(tag, tagIds.size());
+        final String[] guesses = UnknownWordModel.train(lexicon);
+        for (final String tag : guesses)
+            tagIds.putIfAbsent(tag, tagIds.size());
+        if (tagIds.size() > 0xFFFF)
+            throw new IllegalArgumentException(
+                    "Too many distinct tags: " + tagIds.size());
+        final Map<List<String>, Integer> sequences = new LinkedHashMap<>();
+        for (final String key : keys)
+            sequences.putIfAbsent(Arrays.asList(lexicon.get(key)),
+                    sequences.size());
+        if (sequences.size() > 0xFFFF)
+            throw new IllegalArgumentException(
+                    "Too many distinct tag sequences: " + sequences.size());
+
+        final int slotCount = slotCountFor(keys.length);
+        final int mask = slotCount - 1;
+        final int[] slots = new int[slotCount];
+        Arrays.fill(slots, -1);
+
+        final byte[][] encoded = new byte[keys.length][];
+        int offset = 0;
+        for (int i = 0; i < keys.length; i++) {
+            final String key = keys[i];
+            final String[] tags = lexicon.get(key);
+            encoded[i] = key.getBytes(StandardCharsets.UTF_8);
+            if (encoded[i].length > 0xFFFF || tags.length > 0xFF)
+                throw new IllegalArgumentException(
+                        "Lexicon entry too large: " + key);
+            int slot = spread(key.hashCode()) & mask;
+            while (slots[slot] != -1)
+                slot = (slot + 1) & mask;
+            slots[slot] = offset;
+            offset += Short.BYTES + encoded[i].length + Short.BYTES;
+        }
+
+        final DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(os));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(tagIds.size());
+        out.writeInt(sequences.size());
+        out.writeInt(keys.length);
+        out.writeInt(slotCount);
+        for (final String tag : tagIds.keySet()) {
+            final byte[] bytes = tag.getBytes(StandardCharsets.UTF_8);
+            out.writeShort(bytes.length);
+            out.write(bytes);
+        }
+        for (final List<String> sequence : sequences.keySet()) {
+            out.writeByte(sequence.size());
+            for (final String tag : sequence)
+                out.writeShort(tagIds.get(tag));
+        }
+        for (final String tag : guesses)
+            out.writeShort(tagIds.get(tag));
+        for (final int slot : slots)
+            out.writeInt(slot);
+        for (int i = 0; i < keys.length; i++) {
+            out.writeShort(encoded[i].length);
+            out.write(encoded[i]);
+            out.writeShort(sequences.get(Arrays.asList(lexicon.get(keys[i]))));
+        }
+        out.flush();
+    }
+
+    /**
+     * Usage: LexiconCompiler lexicon.txt lexicon.bin
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println(
+                    "Usage: LexiconCompiler <text lexicon> <compiled output>");
+            return;
+        }
+        compile(args[0], args[1]);
+    }
+}
@@ -0,0 +1,307 @@
+package com.ooba.nlp.fasttag;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import com.ooba.nlp.util.TagIds;
+
+/**
+ * Parses text lexicons (lexicon.txt, medical_plus_regular_lexicon.txt) into
+ * the same entries as {@link FastTag#getTagsFromLine(String)} does, but
+ * straight from bytes and in parallel.
+ * <p/>
+ * The text is cut into chunks at line ends and each chunk is parsed by a
+ * task of its own, with no regex split and no Pair per line: the word is the
+ * only object made for a line. A lexicon has far fewer distinct tag lists
+ * than words (about a thousand for ninety thousand words), so a chunk keeps
+ * an open-addressing table of the tag lists it has seen, keyed on their
+ * bytes, and refers to them by index. The tables are then merged so that
+ * every word with the same tags shares one String[] (and one short[] of
+ * {@link TagIds} ids) of interned tag strings, unless the caller asks for
+ * a copy per word. The entries go into a map presized for all of them, in
+ * file order, so a word listed twice keeps its last tags.
+ */
+final class LexiconLoader {
+    // below this many bytes per chunk, a task costs more than it saves
+    private static final int MIN_CHUNK = 1 << 18;
+
+    private LexiconLoader() {}
+
+    /**
+     * Maps the file at path read-only.
+     */
+    static ByteBuffer map(final Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path,
+                StandardOpenOption.READ)) {
+            return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+    }
+
+    /**
+     * Reads in to the end into a heap buffer; in is not closed.
+     */
+    static ByteBuffer read(final InputStream in) throws IOException {
+        byte[] bytes = new byte[1 << 16];
+        int n = 0;
+        for (int r; (r = in.read(bytes, n, bytes.length - n)) >= 0;)
+            if ((n += r) == bytes.length)
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+        return ByteBuffer.wrap(bytes, 0, n);
+    }
+
+    /**
+     * Reads the classpath resource name, or the file name in the working
+     * directory if there is no such resource.
+     */
+    static ByteBuffer bundled(final String name) throws IOException {
+        try (InputStream in = LexiconLoader.class.getClassLoader()
+                                                 .getResourceAsStream(name)) {
+            return in == null ? map(Paths.get(name)) : read(in);
+        }
+    }
+
+    /**
+     * @param text
+     *            UTF-8 text lexicon, from index 0 to its limit
+     * @param copy
+     *            whether each word gets an array of its own; otherwise words
+     *            with the same tags share one, which suits callers that
+     *            only read it
+     * @return word to tags
+     */
+    static Map<String, String[]> strings(final ByteBuffer text,
+            final boolean copy) {
+        final Chunk[] chunks = parse(text, false);
+        final Map<String, String[]> lexicon = new HashMap<>(
+                capacity(chunks));
+        for (final Chunk chunk : chunks)
+            for (int i = 0; i < chunk.size; i++) {
+                final String[] tags = chunk.tags[chunk.sequences[i]];
+                lexicon.put(chunk.words[i], copy ? tags.clone() : tags);
+            }
+        return lexicon;
+    }
+
+    /**
+     * @param text
+     *            UTF-8 text lexicon, from index 0 to its limit
+     * @return the lexicon with its tags registered as {@link TagIds} ids
+     */
+    static Lexicon ids(final ByteBuffer text) {
+        final Chunk[] chunks = parse(text, true);
+        final Map<String, short[]> lexicon = new HashMap<>(capacity(chunks));
+        for (final Chunk chunk : chunks)
+            for (int i = 0; i < chunk.size; i++)
+                lexicon.put(chunk.words[i], chunk.ids[chunk.sequences[i]]);
+        return Lexicon.of(lexicon);
+    }
+
+    private static int capacity(final Chunk[] chunks) {
+        long entries = 0;
+        for (final Chunk chunk : chunks)
+            entries += chunk.size;
+        return (int) Math.min(Integer.MAX_VALUE, entries * 4 / 3 + 1);
+    }
+
+    private static boolean isLineEnd(final byte b) {
+        return b == '\n' || b == '\r';
+    }
+
+    private static Chunk[] parse(final ByteBuffer text, final boolean ids) {
+        final int size = text.limit();
+        final int n = (int) Math.max(1, Math.min(
+                ForkJoinPool.getCommonPoolParallelism() * 4L,
+                size / MIN_CHUNK));
+        // chunk i is [bounds[i], bounds[i + 1]) and starts a line
+        final int[] bounds = new int[n + 1];
+        bounds[n] = size;
+        for (int i = 1; i < n; i++) {
+            int b = Math.max(bounds[i - 1], (int) ((long) size * i / n));
+            while (b < size && !isLineEnd(text.get(b - 1)))
+                b++;
+            bounds[i] = b;
+        }
+        final Chunk[] chunks = new Chunk[n];
+        IntStream.range(0, n).parallel().forEach(i -> chunks[i] = new Chunk(
+                text, bounds[i + 1]).parse(bounds[i]));
+
+        // one array per distinct tag list across chunks, of pooled tags
+        final Map<String, String[]> lists = new HashMap<>();
+        final Map<String[], short[]> listIds = new IdentityHashMap<>();
+        final Map<String, String> pool = new HashMap<>();
+        for (final Chunk chunk : chunks) {
+            chunk.tags = new String[chunk.sequenceCount][];
+            if (ids)
+                chunk.ids = new short[chunk.sequenceCount][];
+            for (int s = 0; s < chunk.sequenceCount; s++) {
+                final String[] tags = lists.computeIfAbsent(
+                        chunk.decode(chunk.sequenceStart[s],
+                                chunk.sequenceEnd[s]),
+                        list -> split(list, pool));
+                chunk.tags[s] = tags;
+                if (ids)
+                    chunk.ids[s] = listIds.computeIfAbsent(tags, TagIds::ids);
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * Splits on single spaces like {@link String#split(String)} with " ":
+     * runs of spaces give empty tags, and "" gives no tags.
+     */
+    private static String[] split(final String list,
+            final Map<String, String> pool) {
+        if (list.isEmpty())
+            return new String[0];
+        int n = 1;
+        for (int i = 0; i < list.length(); i++)
+            if (list.charAt(i) == ' ')
+                n++;
+        final String[] tags = new String[n];
+        for (int i = 0, from = 0; i < n; i++) {
+            int to = list.indexOf(' ', from);
+            if (to < 0)
+                to = list.length();
+            final String tag = list.substring(from, to);
+            tags[i] = pool.computeIfAbsent(tag, t -> t);
+            from = to + 1;
+        }
+        return tags;
+    }
+
+    /**
+     * The entries of one chunk, with tag lists by index into a table of
+     * byte ranges of the text.
+     */
+    private static final class Chunk {
+        private final ByteBuffer text;
+        private final int        end;
+        private byte[]           scratch = new byte[64];
+
+        String[] words     = new String[1024];
+        int[]    sequences = new int[1024];
+        int      size;
+
+        int[] sequenceStart = new int[64];
+        int[] sequenceEnd   = new int[64];
+        int[] sequenceHash  = new int[64];
+        int   sequenceCount;
+        // open-addressing table of sequence indexes, -1 if empty
+        private int[] slots = newSlots(128);
+
+        // filled in by the merge
+        String[][] tags;
+        short[][]  ids;
+
+        Chunk(final ByteBuffer text, final int end) {
+            this.text = text;
+            this.end = end;
+        }
+
+        private static int[] newSlots(final int n) {
+            final int[] slots = new int[n];
+            Arrays.fill(slots, -1);
+            return slots;
+        }
+
+        Chunk parse(int pos) {
+            while (pos < end) {
+                final int lineStart = pos;
+                int space = -1;
+                for (byte b; pos < end && !isLineEnd(b = text.get(pos)); pos++)
+                    if (b == ' ' && space < 0)
+                        space = pos;
+                final int lineEnd = pos++;
+                // lines without a space are skipped, and so are blank ones
+                if (space < 0)
+                    continue;
+                // split drops trailing empty tags
+                int listEnd = lineEnd;
+                while (listEnd > space + 1 && text.get(listEnd - 1) == ' ')
+                    listEnd--;
+                add(decode(lineStart, space), sequence(space + 1, listEnd));
+            }
+            return this;
+        }
+
+        private void add(final String word, final int sequence) {
+            if (size == words.length) {
+                words = Arrays.copyOf(words, size * 2);
+                sequences = Arrays.copyOf(sequences, size * 2);
+            }
+            words[size] = word;
+            sequences[size++] = sequence;
+        }
+
+        String decode(final int from, final int to) {
+            final int len = to - from;
+            if (len > scratch.length)
+                scratch = new byte[Math.max(len, scratch.length * 2)];
+            for (int i = 0; i < len; i++)
+                scratch[i] = text.get(from + i);
+            return new String(scratch, 0, len, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * @return the index of the tag list text[from, to), added if new
+         */
+        private int sequence(final int from, final int to) {
+            int h = 0;
+            for (int i = from; i < to; i++)
+                h = 31 * h + text.get(i);
+            final int mask = slots.length - 1;
+            int slot = LexiconCompiler.spread(h) & mask;
+            for (int s; (s = slots[slot]) >= 0; slot = slot + 1 & mask)
+                if (sequenceHash[s] == h && sameBytes(s, from, to))
+                    return s;
+
+            final int s = sequenceCount++;
+            if (s == sequenceStart.length) {
+                sequenceStart = Arrays.copyOf(sequenceStart, s * 2);
+                sequenceEnd = Arrays.copyOf(sequenceEnd, s * 2);
+                sequenceHash = Arrays.copyOf(sequenceHash, s * 2);
+            }
+            sequenceStart[s] = from;
+            sequenceEnd[s] = to;
+            sequenceHash[s] = h;
+            slots[slot] = s;
+            if (sequenceCount * 2 > slots.length)
+                rehash();
+            return s;
+        }
+
+        private boolean sameBytes(final int s, final int from, final int to) {
+            final int start = sequenceStart[s];
+            if (sequenceEnd[s] - start != to - from)
+                return false;
+            for (int i = 0; i < to - from; i++)
+                if (text.get(start + i) != text.get(from + i))
+                    return false;
+            return true;
+        }
+
+        private void rehash() {
+            slots = newSlots(slots.length * 2);
+            final int mask = slots.length - 1;
+            for (int s = 0; s < sequenceCount; s++) {
+                int slot = LexiconCompiler.spread(sequenceHash[s]) & mask;
+                while (slots[slot] >= 0)
+                    slot = slot + 1 & mask;
+                slots[slot] = s;
+            }
+        }
+    }
+}
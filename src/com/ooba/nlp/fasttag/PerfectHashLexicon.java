@@ -0,0 +1,246 @@
+package com.ooba.nlp.fasttag;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * A {@link Lexicon} stored as a minimal perfect hash (hash and displace):
+ * keys are spread over buckets of about BUCKET_SIZE, and each bucket gets a
+ * displacement that sends all of its keys to distinct slots. A lookup hashes
+ * the word once, reads one displacement and compares against exactly one
+ * stored key, so a miss costs the same as a hit and there is no probing.
+ * <p/>
+ * Keys live back to back in one char[], which is what lets
+ * {@link #getLowerCase(CharSequence)} compare lower-cased chars in place.
+ */
+final class PerfectHashLexicon implements Lexicon {
+    // average keys per bucket; smaller builds faster, larger saves memory
+    private static final int  BUCKET_SIZE = 3;
+    // seeds to try before giving up on a key set
+    private static final int  MAX_SEEDS   = 64;
+    // FNV-1a, 64 bit
+    private static final long BASIS       = 0xCBF29CE484222325L;
+    private static final long PRIME       = 0x100000001B3L;
+    private static final long GOLDEN      = 0x9E3779B97F4A7C15L;
+
+    private final long      seed;
+    private final int[]     displacements;
+    private final char[]    chars;
+    // key i is chars[starts[i], starts[i + 1])
+    private final int[]     starts;
+    private final short[][] tags;
+
+    private PerfectHashLexicon(final long seed, final int[] displacements,
+            final char[] chars, final int[] starts, final short[][] tags) {
+        this.seed = seed;
+        this.displacements = displacements;
+        this.chars = chars;
+        this.starts = starts;
+        this.tags = tags;
+    }
+
+    static boolean hasUpperCase(final CharSequence s) {
+        for (int i = 0, n = s.length(); i < n; i++) {
+            final char c = s.charAt(i);
+            if (Character.toLowerCase(c) != c)
+                return true;
+        }
+        return false;
+    }
+
+    private static long hash(final CharSequence s, final long seed,
+            final boolean lower) {
+        long h = BASIS ^ seed;
+        for (int i = 0, n = s.length(); i < n; i++) {
+            final char c = s.charAt(i);
+            h = (h ^ (lower ? Character.toLowerCase(c) : c)) * PRIME;
+        }
+        return mix(h);
+    }
+
+    // murmur3 finalizer
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    // maps h uniformly onto [0, n) without a division
+    private static int reduce(final int h, final int n) {
+        return (int) (((h & 0xFFFFFFFFL) * n) >>> 32);
+    }
+
+    private static int bucket(final long h, final int buckets) {
+        return reduce((int) (h >>> 32), buckets);
+    }
+
+    private static int slot(final long h, final int displacement,
+            final int n) {
+        return reduce((int) mix(h ^ displacement * GOLDEN), n);
+    }
+
+    static PerfectHashLexicon build(final Map<String, short[]> entries) {
+        final String[] keys = new String[entries.size()];
+        final short[][] values = new short[keys.length][];
+        int i = 0;
+        for (final Map.Entry<String, short[]> e : entries.entrySet()) {
+            keys[i] = e.getKey();
+            values[i++] = e.getValue();
+        }
+        for (long seed = 0; seed < MAX_SEEDS; seed++) {
+            final int[] slots = new int[keys.length];
+            final int[] displacements = place(keys, seed, slots);
+            if (displacements != null)
+                return layout(keys, values, seed, displacements, slots);
+        }
+        throw new IllegalStateException(
+                "Could not build a perfect hash for " + keys.length + " keys");
+    }
+
+    /**
+     * Finds a displacement for every bucket, largest buckets first, and
+     * records each key's slot.
+     *
+     * @return the displacements, or null if this seed does not work
+     */
+    private static int[] place(final String[] keys, final long seed,
+            final int[] slots) {
+        final int n = keys.length;
+        final int buckets = n / BUCKET_SIZE + 1;
+        final long[] hashes = new long[n];
+        for (int i = 0; i < n; i++)
+            hashes[i] = hash(keys[i], seed, false);
+        final long[] sorted = hashes.clone();
+        Arrays.sort(sorted);
+        for (int i = 1; i < n; i++)
+            if (sorted[i] == sorted[i - 1])
+                return null;
+
+        // group key indexes by bucket
+        final int[] first = new int[buckets + 1];
+        for (final long h : hashes)
+            first[bucket(h, buckets) + 1]++;
+        int maxSize = 0;
+        for (int b = 0; b < buckets; b++) {
+            maxSize = Math.max(maxSize, first[b + 1]);
+            first[b + 1] += first[b];
+        }
+        final int[] members = new int[n];
+        final int[] fill = Arrays.copyOf(first, buckets);
+        for (int i = 0; i < n; i++)
+            members[fill[bucket(hashes[i], buckets)]++] = i;
+
+        // order buckets by size, largest first
+        final int[] bySize = new int[maxSize + 2];
+        for (int b = 0; b < buckets; b++)
+            bySize[maxSize - (first[b + 1] - first[b]) + 1]++;
+        for (int s = 1; s < bySize.length; s++)
+            bySize[s] += bySize[s - 1];
+        final int[] order = new int[buckets];
+        for (int b = 0; b < buckets; b++)
+            order[bySize[maxSize - (first[b + 1] - first[b])]++] = b;
+
+        final int[] displacements = new int[buckets];
+        final boolean[] taken = new boolean[n];
+        final int maxDisplacement = Math.max(1 << 16, n * 16);
+        final int[] trial = new int[maxSize];
+        for (final int b : order) {
+            final int from = first[b], size = first[b + 1] - from;
+            if (size == 0)
+                break;
+            int d = 0;
+            while (!fits(hashes, members, from, size, d, taken, trial))
+                if (++d == maxDisplacement)
+                    return null;
+            displacements[b] = d;
+            for (int k = 0; k < size; k++) {
+                taken[trial[k]] = true;
+                slots[members[from + k]] = trial[k];
+            }
+        }
+        return displacements;
+    }
+
+    private static boolean fits(final long[] hashes, final int[] members,
+            final int from, final int size, final int d,
+            final boolean[] taken, final int[] trial) {
+        for (int k = 0; k < size; k++) {
+            final int slot = slot(hashes[members[from + k]], d, taken.length);
+            if (taken[slot])
+                return false;
+            for (int j = 0; j < k; j++)
+                if (trial[j] == slot)
+                    return false;
+            trial[k] = slot;
+        }
+        return true;
+    }
+
+    private static PerfectHashLexicon layout(final String[] keys,
+            final short[][] values, final long seed,
+            final int[] displacements, final int[] slots) {
+        final int n = keys.length;
+        final String[] bySlot = new String[n];
+        final short[][] tags = new short[n][];
+        // copy each distinct array once, so entries that shared one still do
+        final Map<short[], short[]> copies = new IdentityHashMap<>();
+        for (int i = 0; i < n; i++) {
+            bySlot[slots[i]] = keys[i];
+            tags[slots[i]] = copies.computeIfAbsent(values[i], short[]::clone);
+        }
+        final int[] starts = new int[n + 1];
+        for (int s = 0; s < n; s++)
+            starts[s + 1] = starts[s] + bySlot[s].length();
+        final char[] chars = new char[starts[n]];
+        for (int s = 0; s < n; s++)
+            bySlot[s].getChars(0, bySlot[s].length(), chars, starts[s]);
+        return new PerfectHashLexicon(seed, displacements, chars, starts,
+                tags);
+    }
+
+    private short[] find(final CharSequence word, final boolean lower) {
+        final int n = tags.length;
+        if (n == 0)
+            return null;
+        final long h = hash(word, seed, lower);
+        final int slot = slot(h,
+                displacements[bucket(h, displacements.length)], n);
+        final int start = starts[slot];
+        final int len = starts[slot + 1] - start;
+        if (word.length() != len)
+            return null;
+        for (int i = 0; i < len; i++) {
+            final char c = word.charAt(i);
+            if (chars[start + i] != (lower ? Character.toLowerCase(c) : c))
+                return null;
+        }
+        return tags[slot];
+    }
+
+    @Override
+    public short[] get(final CharSequence word) {
+        return find(word, false);
+    }
+
+    @Override
+    public short[] getLowerCase(final CharSequence word) {
+        return find(word, true);
+    }
+
+    @Override
+    public int size() {
+        return tags.length;
+    }
+
+    @Override
+    public void forEach(
+            final BiConsumer<? super String, ? super short[]> action) {
+        for (int s = 0; s < tags.length; s++)
+            action.accept(new String(chars, starts[s], starts[s + 1]
+                    - starts[s]), tags[s]);
+    }
+}
@@ -0,0 +1,149 @@
+package com.ooba.nlp.fasttag;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * A tagger whose lexicon (or rules) can be replaced while it is in use.
+ * <p/>
+ * It holds the current {@link Tagger} in an atomic reference. Every tagging
+ * call reads that reference once and runs entirely on the snapshot it got,
+ * so a sentence, a parallel document or a stream that is already being
+ * tagged finishes with the old lexicon, and calls made after a swap see the
+ * new one. Reading the reference is the only cost on the tagging path:
+ * there are no locks and no pauses. Snapshots that are no longer referenced
+ * are collected as usual.
+ * <p/>
+ * The new lexicon is built before it is swapped in, typically with
+ * {@link CompiledLexicon#open(String)} or
+ * {@link Lexicon#layered(Lexicon...)}, so tagging never waits for it.
+ */
+public final class ReloadableTagger {
+    private final AtomicReference<Tagger> current;
+
+    public ReloadableTagger(final Tagger initial) {
+        current = new AtomicReference<>(initial);
+    }
+
+    /**
+     * @return the tagger new calls will use; keep it to tag several texts
+     *         against the same lexicon
+     */
+    public Tagger current() {
+        return current.get();
+    }
+
+    /**
+     * Swaps in a tagger with the same rules over lexicon.
+     *
+     * @return the tagger that was replaced
+     */
+    public Tagger swap(final Lexicon lexicon) {
+        return current.getAndUpdate(t -> t.withLexicon(lexicon));
+    }
+
+    /**
+     * Swaps in the lexicon a {@link LexiconCompiler} wrote to path.
+     *
+     * @return the tagger that was replaced
+     */
+    public Tagger reload(final String path) throws IOException {
+        return swap(CompiledLexicon.open(path).ids());
+    }
+
+    /**
+     * Atomically replaces the current tagger with update applied to it; for
+     * example {@code update(t -> t.withRules(rules))}. update may be called
+     * more than once if other threads swap at the same time, so it should
+     * be cheap and free of side effects.
+     *
+     * @return the new tagger
+     */
+    public Tagger update(final UnaryOperator<Tagger> update) {
+        return current.updateAndGet(update);
+    }
+
+    /**
+     * @see Tagger#tag(String)
+     */
+    public String tag(final String word) {
+        return current().tag(word);
+    }
+
+    /**
+     * @see Tagger#tag(List)
+     */
+    public List<String> tag(final List<String> words) {
+        return current().tag(words);
+    }
+
+    /**
+     * @see Tagger#tagSentence(String[])
+     */
+    public TaggedSentence tagSentence(final String[] words) {
+        return current().tagSentence(words);
+    }
+
+    /**
+     * @see Tagger#tagParallel(String[])
+     */
+    public TaggedSentence tagParallel(final String[] words) {
+        return current().tagParallel(words);
+    }
+
+    /**
+     * @see Tagger#tagText(String)
+     */
+    public List<String> tagText(final String text) {
+        return current().tagText(text);
+    }
+
+    /**
+     * @see Tagger#tagSpans(CharSequence)
+     */
+    public TaggedSpans tagSpans(final CharSequence text) {
+        return current().tagSpans(text);
+    }
+
+    /**
+     * @see Tagger#tagSpans(CharSequence, SpanConsumer)
+     */
+    public int tagSpans(final CharSequence text,
+            final SpanConsumer consumer) {
+        return current().tagSpans(text, consumer);
+    }
+
+    /**
+     * The session tags with the tagger that was current when this was
+     * called.
+     *
+     * @see Tagger#newSession()
+     */
+    public TaggingSession newSession() {
+        return current().newSession();
+    }
+
+    /**
+     * The whole stream is tagged with the tagger that was current when this
+     * was called.
+     *
+     * @see Tagger#tagSentences(Reader)
+     */
+    public Stream<TaggedSentence> tagSentences(final Reader reader) {
+        return current().tagSentences(reader);
+    }
+
+    /**
+     * The whole stream is tagged with the tagger that was current when this
+     * was called.
+     *
+     * @see Tagger#tagStream(Reader)
+     */
+    public Stream<String> tagStream(final Reader reader) {
+        return current().tagStream(reader);
+    }
+}
@@ -0,0 +1,519 @@
+package com.ooba.nlp.fasttag;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.ooba.nlp.util.Numerals;
+import com.ooba.nlp.util.SuffixAutomaton;
+import com.ooba.nlp.util.TagIds;
+
+/**
+ * Brill-style transformation rules, read from a rules file (see rules.txt
+ * for the format and the default rules) and compiled into a dispatch table.
+ * <p/>
+ * Every token runs through the rules in file order; a rule whose from
+ * pattern matches the token's current tag and whose condition holds
+ * changes that tag. Instead of testing every rule, the table lists, for each
+ * (current tag, last char of the token) pair, only the rules that could
+ * fire, so the work per token depends on how many rules are relevant to it
+ * rather than on the size of the rule set. The SUFFIX arguments are compiled
+ * into a {@link SuffixAutomaton}, so a token is walked once from its end
+ * however many suffix rules it meets.
+ * <p/>
+ * A RuleSet is immutable apart from the table growing when it meets tag
+ * ids registered after it was built, and may be shared between threads.
+ */
+public final class RuleSet {
+    private static final String DEFAULT_RESOURCE = "rules.txt";
+
+    // loaded by getDefault; null until that succeeds
+    private static volatile RuleSet defaultRules;
+
+    private static final int PREVTAG  = 0;
+    private static final int NEXTTAG  = 1;
+    private static final int PREVWORD = 2;
+    private static final int NEXTWORD = 3;
+    private static final int SUFFIX   = 4;
+    private static final int PREFIX   = 5;
+    private static final int NUMBER   = 6;
+
+    private static final String[] CONDITIONS = { "PREVTAG", "NEXTTAG",
+            "PREVWORD", "NEXTWORD", "SUFFIX", "PREFIX", "NUMBER" };
+
+    /** Word tests beyond this many are never cached; see shapeOf. */
+    static final int CACHED_TESTS = 15;
+
+    /**
+     * A tag, a tag prefix ("NN*") or any tag ("*"). The stand-in for no tag
+     * ({@link FastTag#NO_TAG}) matches nothing.
+     */
+    private static final class TagPattern {
+        private final short  exact;
+        private final String prefix;
+
+        TagPattern(final String pattern) {
+            if (pattern.endsWith("*")) {
+                exact = -1;
+                prefix = pattern.substring(0, pattern.length() - 1);
+            } else {
+                exact = TagIds.id(pattern);
+                prefix = null;
+            }
+        }
+
+        boolean matches(final int tag) {
+            if (tag < 0)
+                return false;
+            return prefix == null ? tag == exact
+                    : TagIds.name(tag).startsWith(prefix);
+        }
+    }
+
+    // one entry per rule, in file order
+    private final String[]     text;
+    private final TagPattern[] fromTag;
+    private final short[]      toTag;
+    private final int[]        condition;
+    private final TagPattern[] tagArg;
+    private final String[]     wordArg;
+    // index of the rule's word test (SUFFIX, PREFIX, NUMBER), or -1
+    private final int[]        test;
+    // kind and argument of each distinct word test
+    private final int[]        testKind;
+    private final String[]     testArg;
+    // all SUFFIX arguments, and the suffix index of each word test or -1
+    private final SuffixAutomaton suffixes;
+    private final int[]           suffixOf;
+    // true if some SUFFIX test is beyond the cached ones
+    private final boolean         uncachedSuffix;
+
+    // last chars of SUFFIX arguments; class k > 0 is ends[k - 1]
+    private final char[] ends;
+    private final byte[] asciiClass = new byte[128];
+
+    private final boolean usesPrevTag;
+    private final boolean usesNextTag;
+    private final boolean looksAhead;
+
+    private volatile Dispatch dispatch;
+
+    /**
+     * For every tag id seen so far: the candidate rules per char class and
+     * whether a text may be cut after a token with that rule 0 tag.
+     */
+    private static final class Dispatch {
+        final int[][][] rules;
+        final boolean[] cutPoint;
+
+        Dispatch(final int[][][] rules, final boolean[] cutPoint) {
+            this.rules = rules;
+            this.cutPoint = cutPoint;
+        }
+    }
+
+    private RuleSet(final List<String[]> rules) {
+        final int n = rules.size();
+        text = new String[n];
+        fromTag = new TagPattern[n];
+        toTag = new short[n];
+        condition = new int[n];
+        tagArg = new TagPattern[n];
+        wordArg = new String[n];
+        test = new int[n];
+        final List<String> testKeys = new ArrayList<>();
+        final StringBuilder endChars = new StringBuilder();
+        for (int r = 0; r < n; r++) {
+            final String[] rule = rules.get(r);
+            text[r] = String.join(" ", rule);
+            fromTag[r] = new TagPattern(rule[0]);
+            toTag[r] = TagIds.id(rule[1]);
+            condition[r] = Arrays.asList(CONDITIONS).indexOf(rule[2]);
+            wordArg[r] = rule.length > 3 ? rule[3] : "";
+            test[r] = -1;
+            if (condition[r] == PREVTAG || condition[r] == NEXTTAG)
+                tagArg[r] = new TagPattern(wordArg[r]);
+            if (condition[r] == SUFFIX) {
+                final char end = wordArg[r].charAt(wordArg[r].length() - 1);
+                if (endChars.indexOf(String.valueOf(end)) < 0)
+                    endChars.append(end);
+            }
+            if (condition[r] >= SUFFIX) {
+                final String key = condition[r] + " " + wordArg[r];
+                if (!testKeys.contains(key))
+                    testKeys.add(key);
+                test[r] = testKeys.indexOf(key);
+            }
+        }
+        testKind = new int[testKeys.size()];
+        testArg = new String[testKeys.size()];
+        suffixOf = new int[testKeys.size()];
+        final List<String> suffixArgs = new ArrayList<>();
+        boolean uncached = false;
+        for (int t = 0; t < testKind.length; t++) {
+            final String key = testKeys.get(t);
+            final int space = key.indexOf(' ');
+            testKind[t] = Integer.parseInt(key.substring(0, space));
+            testArg[t] = key.substring(space + 1);
+            suffixOf[t] = -1;
+            if (testKind[t] == SUFFIX) {
+                suffixOf[t] = suffixArgs.size();
+                suffixArgs.add(testArg[t]);
+                uncached |= t >= CACHED_TESTS;
+            }
+        }
+        suffixes = SuffixAutomaton.of(suffixArgs);
+        uncachedSuffix = uncached;
+        ends = endChars.toString().toCharArray();
+        for (int k = 0; k < ends.length; k++)
+            if (ends[k] < 128)
+                asciiClass[ends[k]] = (byte) (k + 1);
+        boolean prev = false, next = false, ahead = false;
+        for (final int c : condition) {
+            prev |= c == PREVTAG;
+            next |= c == NEXTTAG;
+            ahead |= c == NEXTTAG || c == NEXTWORD;
+        }
+        usesPrevTag = prev;
+        usesNextTag = next;
+        looksAhead = ahead;
+        dispatch = build(TagIds.count());
+    }
+
+    /**
+     * Parses rules in the rules.txt format.
+     *
+     * @throws IllegalArgumentException
+     *             naming the first line that is not a valid rule
+     */
+    public static RuleSet parse(final String text) {
+        try {
+            return parse(new BufferedReader(new StringReader(text)));
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param path
+     *            a rules file
+     */
+    public static RuleSet load(final String path) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(path),
+                StandardCharsets.UTF_8)) {
+            return parse(reader);
+        }
+    }
+
+    /**
+     * @return rules 1-8, as read from the rules.txt bundled on the
+     *         classpath, or else from rules.txt in the working directory.
+     *         They are read on first use; until that succeeds, every call
+     *         tries again.
+     * @throws IllegalStateException
+     *             if there is no rules.txt in either place
+     * @throws UncheckedIOException
+     *             if it cannot be read
+     */
+    public static RuleSet getDefault() {
+        RuleSet rules = defaultRules;
+        if (rules == null)
+            synchronized (RuleSet.class) {
+                if ((rules = defaultRules) == null)
+                    defaultRules = rules = loadDefault();
+            }
+        return rules;
+    }
+
+    private static RuleSet loadDefault() {
+        try (InputStream in = RuleSet.class.getClassLoader()
+                                          .getResourceAsStream(
+                                                  DEFAULT_RESOURCE)) {
+            if (in != null)
+                return parse(new BufferedReader(
+                        new InputStreamReader(in, StandardCharsets.UTF_8)));
+            if (Files.isRegularFile(Paths.get(DEFAULT_RESOURCE)))
+                return load(DEFAULT_RESOURCE);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        throw new IllegalStateException("No " + DEFAULT_RESOURCE
+                + " on the classpath or in the working directory");
+    }
+
+    private static RuleSet parse(final BufferedReader reader)
+            throws IOException {
+        final List<String[]> rules = new ArrayList<>();
+        String line;
+        int number = 0;
+        while ((line = reader.readLine()) != null) {
+            number++;
+            final int hash = line.indexOf('#');
+            final String body = (hash < 0 ? line : line.substring(0, hash))
+                    .trim();
+            if (body.isEmpty())
+                continue;
+            final String[] rule = body.split("\\s+");
+            final String error = validate(rule);
+            if (error != null)
+                throw new IllegalArgumentException(
+                        "rules line " + number + ": " + error + ": " + line);
+            rules.add(rule);
+        }
+        return new RuleSet(rules);
+    }
+
+    private static String validate(final String[] rule) {
+        if (rule.length < 3)
+            return "expected <from> <to> <condition> [<argument>]";
+        if (rule[1].endsWith("*"))
+            return "the tag to change to cannot be a pattern";
+        final int c = Arrays.asList(CONDITIONS).indexOf(rule[2]);
+        if (c < 0)
+            return "unknown condition " + rule[2];
+        final int expected = c == NUMBER ? 3 : 4;
+        if (rule.length != expected)
+            return rule[2] + " takes " + (expected - 3) + " argument(s)";
+        if (c == SUFFIX && rule[3].isEmpty())
+            return "empty suffix";
+        return null;
+    }
+
+    public int size() {
+        return toTag.length;
+    }
+
+    /**
+     * @return rule r, in file order from 0, as "from to condition [argument]"
+     */
+    public String rule(final int r) {
+        return text[r];
+    }
+
+    private int charClass(final CharSequence word) {
+        if (word.length() == 0)
+            return 0;
+        final char c = word.charAt(word.length() - 1);
+        if (c < 128)
+            return asciiClass[c];
+        for (int k = 0; k < ends.length; k++)
+            if (ends[k] == c)
+                return k + 1;
+        return 0;
+    }
+
+    private Dispatch build(final int tagCount) {
+        final int[][][] rules = new int[tagCount][ends.length + 1][];
+        final boolean[] cutPoint = new boolean[tagCount];
+        for (int tag = 0; tag < tagCount; tag++) {
+            for (int k = 0; k <= ends.length; k++) {
+                final int[] list = new int[toTag.length];
+                int size = 0;
+                for (int r = 0; r < toTag.length; r++)
+                    if (fromTag[r].matches(tag) && (condition[r] != SUFFIX
+                            || k > 0 && wordArg[r].charAt(
+                                    wordArg[r].length() - 1) == ends[k - 1]))
+                        list[size++] = r;
+                rules[tag][k] = Arrays.copyOf(list, size);
+            }
+            cutPoint[tag] = !canReachPrevTag(tag);
+        }
+        return new Dispatch(rules, cutPoint);
+    }
+
+    /**
+     * @return true if some sequence of rules can turn tag into one that a
+     *         PREVTAG condition tests
+     */
+    private boolean canReachPrevTag(final int tag) {
+        if (!usesPrevTag)
+            return false;
+        final List<Integer> seen = new ArrayList<>();
+        seen.add(tag);
+        for (int i = 0; i < seen.size(); i++) {
+            final int t = seen.get(i);
+            for (int r = 0; r < toTag.length; r++) {
+                if (condition[r] == PREVTAG && tagArg[r].matches(t))
+                    return true;
+                if (fromTag[r].matches(t) && !seen.contains((int) toTag[r]))
+                    seen.add((int) toTag[r]);
+            }
+        }
+        return false;
+    }
+
+    private Dispatch dispatchFor(final int tag) {
+        final Dispatch d = dispatch;
+        return tag < d.rules.length ? d : grow();
+    }
+
+    private synchronized Dispatch grow() {
+        final Dispatch d = build(TagIds.count());
+        dispatch = d;
+        return d;
+    }
+
+    /**
+     * A text may be cut for parallel tagging right after a token whose rule
+     * 0 tag is tag when no chain of rules can give that token a final tag a
+     * PREVTAG condition looks for: the next token then tags the same
+     * whether or not it sees it.
+     */
+    boolean isCutPoint(final short tag) {
+        return dispatchFor(tag).cutPoint[tag];
+    }
+
+    /**
+     * @return false if no rule looks at the next token's tag, so callers
+     *         need not look it up
+     */
+    boolean usesNextTag() {
+        return usesNextTag;
+    }
+
+    /**
+     * @return false if no rule looks at the next token, so a token's tag is
+     *         settled once the tokens before it are
+     */
+    boolean looksAhead() {
+        return looksAhead;
+    }
+
+    /**
+     * @param state
+     *            where the suffix automaton stopped on word
+     */
+    private boolean passes(final int t, final CharSequence word,
+            final int state) {
+        switch (testKind[t]) {
+            case SUFFIX:
+                return suffixes.endsWith(state, suffixOf[t]);
+            case PREFIX:
+                return startsWith(word, testArg[t]);
+            default:
+                return hasPeriod(word) || Numerals.isNumber(word);
+        }
+    }
+
+    private static boolean startsWith(final CharSequence word,
+            final String prefix) {
+        if (word instanceof String)
+            return ((String) word).startsWith(prefix);
+        if (word.length() < prefix.length())
+            return false;
+        for (int i = 0; i < prefix.length(); i++)
+            if (word.charAt(i) != prefix.charAt(i))
+                return false;
+        return true;
+    }
+
+    private static boolean hasPeriod(final CharSequence word) {
+        for (int i = 0, n = word.length(); i < n; i++)
+            if (word.charAt(i) == '.')
+                return true;
+        return false;
+    }
+
+    /**
+     * @return the outcome of the first CACHED_TESTS word tests on word, one
+     *         bit each, for a {@link TokenCache}
+     */
+    int shapeOf(final CharSequence word) {
+        final int state = suffixes.walk(word);
+        int shape = 0;
+        for (int t = 0; t < Math.min(testKind.length, CACHED_TESTS); t++)
+            if (passes(t, word, state))
+                shape |= 1 << t;
+        return shape;
+    }
+
+    private static boolean sameWord(final CharSequence word,
+            final String arg) {
+        if (word == null || word.length() != arg.length())
+            return false;
+        if (word instanceof String)
+            return ((String) word).equalsIgnoreCase(arg);
+        // the char by char comparison String.equalsIgnoreCase makes
+        for (int i = 0; i < arg.length(); i++) {
+            final char a = word.charAt(i), b = arg.charAt(i);
+            if (a != b && Character.toUpperCase(a) != Character.toUpperCase(b)
+                    && Character.toLowerCase(Character.toUpperCase(a))
+                            != Character.toLowerCase(Character.toUpperCase(b)))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Applies the rules in place to tags[from, to), which must already hold
+     * the rule 0 tag for every word. Before from, rules look at prevWord and
+     * prevTag instead of the arrays; at to, at nextWord and nextTag (the
+     * next word's rule 0 tag). shapes, when not null, holds
+     * {@link #shapeOf(CharSequence)} of words[from + k] at k. metrics, when not
+     * null, counts every rule that fires.
+     */
+    void apply(final CharSequence[] words, final short[] tags,
+            final int[] shapes, final int from, final int to,
+            final CharSequence prevWord, final short prevTag,
+            final CharSequence nextWord, final short nextTag,
+            final TaggerMetrics metrics) {
+        for (int i = from; i < to; i++) {
+            final CharSequence word = words[i];
+            final int k = charClass(word);
+            // only tokens in a suffix class can meet a SUFFIX rule
+            final int state = k > 0 && (shapes == null || uncachedSuffix)
+                    ? suffixes.walk(word) : 0;
+            short tag = tags[i];
+            int[] candidates = dispatchFor(tag).rules[tag][k];
+            int c = 0;
+            while (c < candidates.length) {
+                final int r = candidates[c];
+                if (holds(r, words, tags, shapes, state, i, from, to,
+                        prevWord, prevTag, nextWord, nextTag)) {
+                    tag = toTag[r];
+                    if (metrics != null)
+                        metrics.ruleFired(r);
+                    candidates = dispatchFor(tag).rules[tag][k];
+                    c = Arrays.binarySearch(candidates, r + 1);
+                    if (c < 0)
+                        c = -c - 1;
+                } else
+                    c++;
+            }
+            tags[i] = tag;
+        }
+    }
+
+    private boolean holds(final int r, final CharSequence[] words,
+            final short[] tags, final int[] shapes, final int state,
+            final int i, final int from, final int to,
+            final CharSequence prevWord, final short prevTag,
+            final CharSequence nextWord, final short nextTag) {
+        switch (condition[r]) {
+            case PREVTAG:
+                return tagArg[r].matches(i > from ? tags[i - 1] : prevTag);
+            case NEXTTAG:
+                return tagArg[r].matches(i + 1 < to ? tags[i + 1] : nextTag);
+            case PREVWORD:
+                return sameWord(i > from ? words[i - 1] : prevWord,
+                        wordArg[r]);
+            case NEXTWORD:
+                return sameWord(i + 1 < to ? words[i + 1] : nextWord,
+                        wordArg[r]);
+            default:
+                final int t = test[r];
+                if (shapes != null && t < CACHED_TESTS)
+                    return (shapes[i - from] & 1 << t) != 0;
+                return passes(t, words[i], state);
+        }
+    }
+}
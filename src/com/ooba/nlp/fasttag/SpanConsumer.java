@@ -0,0 +1,20 @@
+package com.ooba.nlp.fasttag;
+
+import com.ooba.nlp.util.TagIds;
+
+/**
+ * Receives the tokens of {@link Tagger#tagSpans(CharSequence, SpanConsumer)}
+ * as (start, end, tag) triples, in order.
+ */
+@FunctionalInterface
+public interface SpanConsumer {
+    /**
+     * @param start
+     *            offset of the token's first char in the text
+     * @param end
+     *            offset just past its last char
+     * @param tag
+     *            its {@link TagIds} id
+     */
+    void accept(int start, int end, short tag);
+}
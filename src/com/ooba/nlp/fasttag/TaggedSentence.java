@@ -0,0 +1,72 @@
+package com.ooba.nlp.fasttag;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ooba.nlp.util.POS;
+import com.ooba.nlp.util.TagIds;
+
+/**
+ * The result of tagging a run of words: the words and their tag ids as
+ * parallel arrays. Tag ids are {@link TagIds} ids, so callers can test
+ * categories or map to {@link POS} without building or re-parsing
+ * "word/TAG" strings. The arrays are exposed directly and must not be
+ * modified.
+ */
+public final class TaggedSentence {
+    public final String[] words;
+    public final short[]  tags;
+
+    public TaggedSentence(final String[] words, final short[] tags) {
+        if (words.length != tags.length)
+            throw new IllegalArgumentException(
+                    "words and tags must be the same length");
+        this.words = words;
+        this.tags = tags;
+    }
+
+    public int size() {
+        return words.length;
+    }
+
+    public String word(final int i) {
+        return words[i];
+    }
+
+    public short tagId(final int i) {
+        return tags[i];
+    }
+
+    public String tag(final int i) {
+        return TagIds.name(tags[i]);
+    }
+
+    /**
+     * @return the POS for word i, or null if its tag is not a POS tag
+     */
+    public POS pos(final int i) {
+        return TagIds.pos(tags[i]);
+    }
+
+    /**
+     * @return word i, tagged: word/tag
+     */
+    public String taggedWord(final int i) {
+        return words[i] + "/" + tag(i);
+    }
+
+    /**
+     * @return every word, tagged: word/tag
+     */
+    public List<String> toTaggedWords() {
+        final List<String> res = new ArrayList<>(words.length);
+        for (int i = 0; i < words.length; i++)
+            res.add(taggedWord(i));
+        return res;
+    }
+
+    @Override
+    public String toString() {
+        return String.join(" ", toTaggedWords());
+    }
+}
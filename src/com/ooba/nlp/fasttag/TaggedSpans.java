@@ -0,0 +1,87 @@
+package com.ooba.nlp.fasttag;
+
+import com.ooba.nlp.util.CharSpan;
+import com.ooba.nlp.util.POS;
+import com.ooba.nlp.util.TagIds;
+
+/**
+ * The result of {@link Tagger#tagSpans(CharSequence)}: each token as its
+ * offsets in the text and its tag id, in parallel arrays. No token is
+ * copied out of the text; {@link #word(int)} gives a view of it. The
+ * arrays are exposed directly and must not be modified.
+ */
+public final class TaggedSpans {
+    public final CharSequence text;
+    public final int[]        starts;
+    public final int[]        ends;
+    public final short[]      tags;
+
+    public TaggedSpans(final CharSequence text, final int[] starts,
+            final int[] ends, final short[] tags) {
+        if (starts.length != tags.length || ends.length != tags.length)
+            throw new IllegalArgumentException(
+                    "starts, ends and tags must be the same length");
+        this.text = text;
+        this.starts = starts;
+        this.ends = ends;
+        this.tags = tags;
+    }
+
+    public int size() {
+        return tags.length;
+    }
+
+    public int start(final int i) {
+        return starts[i];
+    }
+
+    public int end(final int i) {
+        return ends[i];
+    }
+
+    /**
+     * @return a view of token i in the text
+     */
+    public CharSpan word(final int i) {
+        return CharSpan.of(text, starts[i], ends[i]);
+    }
+
+    public short tagId(final int i) {
+        return tags[i];
+    }
+
+    public String tag(final int i) {
+        return TagIds.name(tags[i]);
+    }
+
+    /**
+     * @return the POS for token i, or null if its tag is not a POS tag
+     */
+    public POS pos(final int i) {
+        return TagIds.pos(tags[i]);
+    }
+
+    /**
+     * @return the same tokens as a TaggedSentence, copying each one
+     */
+    public TaggedSentence toTaggedSentence() {
+        final String[] words = new String[tags.length];
+        for (int i = 0; i < words.length; i++)
+            words[i] = text.subSequence(starts[i], ends[i]).toString();
+        return new TaggedSentence(words, tags);
+    }
+
+    /**
+     * @return every token, tagged: word/tag, separated by spaces
+     */
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < tags.length; i++) {
+            if (i > 0)
+                sb.append(' ');
+            sb.append(text, starts[i], ends[i]).append('/').append(tag(i));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,672 @@
+package com.ooba.nlp.fasttag;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.management.JMException;
+
+import com.ooba.nlp.util.CharSpan;
+import com.ooba.nlp.util.TagIds;
+import com.ooba.nlp.util.TokenScanner;
+import com.ooba.nlp.util.Tokenizer;
+
+/**
+ * A part of speech tagger bound to one lexicon.
+ * <p/>
+ * Build it once and share it: a Tagger never changes after construction, so
+ * any number of threads can tag through the same instance. The lexicon is
+ * held as a {@link Lexicon}, with tags as {@link TagIds} ids, and rules
+ * 1-8 come from {@link RuleSet#getDefault()} unless {@link #withRules}
+ * gives other ones.
+ * <p/>
+ * A tagger can also carry a {@link TokenCache} (see
+ * {@link #withTokenCache(int)}). The default tagger gets one when the
+ * fasttag.tokenCache system property gives it a capacity. Likewise
+ * {@link #withMetrics()} turns on {@link TaggerMetrics}; the default tagger
+ * records them, and registers them over JMX as "default", when the
+ * fasttag.metrics system property is true.
+ * <p/>
+ * A short-lived process can call {@link #preloadDefault()} first thing to
+ * load the default tagger while it does other start-up work, and can bundle
+ * a lexicon compiled by {@link LexiconCompiler} as lexicon.bin so that
+ * loading is a copy instead of a parse.
+ * <p/>
+ * Words missing from the lexicon get NN (or "^" for a single char) before
+ * the rules run, unless {@link #withGuesses()} turns on guessing from their
+ * endings and shapes. The default tagger does not guess.
+ * <p/>
+ * To change the lexicon of a tagger that is in use, hold it in a
+ * {@link ReloadableTagger}.
+ * <p/>
+ * For many short texts (titles, queries) use the tagBatch methods: they
+ * tokenize and tag each text in per-thread buffers that are reused from one
+ * text to the next.
+ */
+public final class Tagger {
+    // below this many tokens per task, forking costs more than it saves
+    private static final int PARALLEL_CHUNK = 2048;
+    // longest run of tokens tagStream/tagSentences will buffer
+    static final int         MAX_SENTENCE   = 4096;
+    // compiled default lexicon, bundled by the build next to lexicon.txt
+    private static final String DEFAULT_SNAPSHOT = "lexicon.bin";
+
+    private static volatile CompletableFuture<Tagger> defaultLoad;
+
+    private final Lexicon       lexicon;
+    private final RuleSet       rules;
+    // null when caching is off
+    private final TokenCache    cache;
+    // null when metrics are off
+    private final TaggerMetrics metrics;
+
+    private Tagger(final Lexicon lexicon, final RuleSet rules,
+            final TokenCache cache, final TaggerMetrics metrics) {
+        this.lexicon = lexicon;
+        this.rules = rules;
+        this.cache = cache;
+        this.metrics = metrics;
+    }
+
+    private Tagger(final Lexicon lexicon) {
+        this(lexicon, RuleSet.getDefault(), null, null);
+    }
+
+    /**
+     * Starts loading the default tagger on a background thread, unless it
+     * is loaded or loading already, so a process can do other start-up work
+     * meanwhile. {@link #getDefault()} waits for the same load.
+     *
+     * @return completes with {@link #getDefault()}'s tagger, or
+     *         exceptionally if loading fails
+     */
+    public static CompletableFuture<Tagger> preloadDefault() {
+        return defaultTagger(true);
+    }
+
+    /**
+     * @return the process-wide tagger, loaded on first use (see
+     *         {@link #preloadDefault()}). Its lexicon is, in order of
+     *         preference: the text or compiled file named by the
+     *         fasttag.lexicon system property; a lexicon.bin resource
+     *         written by {@link LexiconCompiler}; the lexicon.txt resource;
+     *         lexicon.txt in the working directory.
+     * @throws UncheckedIOException
+     *             if the lexicon cannot be read; a failed load is not
+     *             retried
+     */
+    public static Tagger getDefault() {
+        try {
+            return defaultTagger(false).join();
+        } catch (final CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw e;
+        }
+    }
+
+    private static CompletableFuture<Tagger> defaultTagger(
+            final boolean background) {
+        CompletableFuture<Tagger> loading = defaultLoad;
+        if (loading != null)
+            return loading;
+        synchronized (Tagger.class) {
+            if ((loading = defaultLoad) != null)
+                return loading;
+            defaultLoad = loading = new CompletableFuture<>();
+        }
+        final CompletableFuture<Tagger> load = loading;
+        final Runnable task = () -> {
+            try {
+                load.complete(loadDefault());
+            } catch (final Throwable t) {
+                load.completeExceptionally(t);
+            }
+        };
+        if (background) {
+            final Thread thread = new Thread(task, "fasttag-preload");
+            thread.setDaemon(true);
+            thread.start();
+        } else
+            task.run();
+        return load;
+    }
+
+    private static Tagger loadDefault() {
+        final Tagger tagger;
+        try {
+            tagger = new Tagger(defaultLexicon()).withTokenCache(
+                    Integer.getInteger("fasttag.tokenCache", 0));
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (!Boolean.getBoolean("fasttag.metrics"))
+            return tagger;
+        final Tagger measured = tagger.withMetrics();
+        try {
+            measured.metrics().register("default");
+        } catch (final JMException e) {
+            throw new IllegalStateException(e);
+        }
+        return measured;
+    }
+
+    private static Lexicon defaultLexicon() throws IOException {
+        final String path = System.getProperty("fasttag.lexicon");
+        if (path != null)
+            return LexiconCompiler.isCompiled(path)
+                    ? CompiledLexicon.open(path).ids()
+                    : FastTag.buildIdLexicon(path);
+        final InputStream snapshot = Tagger.class.getClassLoader()
+                                                 .getResourceAsStream(
+                                                         DEFAULT_SNAPSHOT);
+        if (snapshot != null)
+            try (InputStream in = snapshot) {
+                return CompiledLexicon.read(in).ids();
+            }
+        return LexiconLoader.ids(
+                LexiconLoader.bundled(FastTag.DEFAULT_LEXICON));
+    }
+
+    /**
+     * @param lexicon
+     *            for example {@link Lexicon#layered(Lexicon...)} of a base
+     *            lexicon and domain additions
+     */
+    public static Tagger fromLexicon(final Lexicon lexicon) {
+        return new Tagger(lexicon);
+    }
+
+    /**
+     * @param lexicon
+     *            word to tags map; it is copied
+     */
+    public static Tagger fromMap(final Map<String, String[]> lexicon) {
+        return new Tagger(FastTag.toIdLexicon(lexicon));
+    }
+
+    /**
+     * @param path
+     *            text lexicon such as lexicon.txt
+     */
+    public static Tagger fromText(final String path) {
+        return new Tagger(FastTag.buildIdLexicon(path));
+    }
+
+    /**
+     * @param path
+     *            lexicon written by {@link LexiconCompiler}
+     */
+    public static Tagger fromCompiled(final String path) throws IOException {
+        return new Tagger(CompiledLexicon.open(path).ids());
+    }
+
+    /**
+     * @param capacity
+     *            most tokens to cache, or 0 for no cache
+     * @return a tagger over the same lexicon that caches per-token results
+     *         in a new {@link TokenCache}
+     */
+    public Tagger withTokenCache(final int capacity) {
+        return new Tagger(lexicon, rules,
+                capacity > 0 ? new TokenCache(capacity) : null, metrics);
+    }
+
+    /**
+     * @return a tagger over {@link Lexicon#withGuesses()} of this one's
+     *         lexicon; a token cache, if any, is replaced by an empty one of
+     *         the same capacity
+     */
+    public Tagger withGuesses() {
+        return withLexicon(lexicon.withGuesses());
+    }
+
+    /**
+     * @return a tagger over the same lexicon that records
+     *         {@link TaggerMetrics}, starting from zero
+     */
+    public Tagger withMetrics() {
+        return new Tagger(lexicon, rules, cache, new TaggerMetrics(rules));
+    }
+
+    /**
+     * @return a tagger over the same lexicon that applies rules after rule
+     *         0; a token cache, if any, is replaced by an empty one of the
+     *         same capacity, and so are metrics
+     */
+    public Tagger withRules(final RuleSet rules) {
+        return new Tagger(lexicon, rules,
+                cache == null ? null : new TokenCache(cache.capacity()),
+                metrics == null ? null : new TaggerMetrics(rules));
+    }
+
+    /**
+     * @return a tagger with the same rules over another lexicon; a token
+     *         cache, if any, is replaced by an empty one of the same
+     *         capacity, and metrics, if any, go on counting in the same
+     *         {@link TaggerMetrics}
+     */
+    public Tagger withLexicon(final Lexicon lexicon) {
+        return new Tagger(lexicon, rules,
+                cache == null ? null : new TokenCache(cache.capacity()),
+                metrics);
+    }
+
+    public Lexicon lexicon() {
+        return lexicon;
+    }
+
+    public RuleSet rules() {
+        return rules;
+    }
+
+    /**
+     * @return the token cache, or null if this tagger does not cache
+     */
+    public TokenCache tokenCache() {
+        return cache;
+    }
+
+    /**
+     * @return the metrics, or null if this tagger does not record them
+     */
+    public TaggerMetrics metrics() {
+        return metrics;
+    }
+
+    // one tagging call: a sentence, a streamed sentence, a session chunk
+    short[] tagIds(final String[] words, final String prevWord,
+            final short prevTag, final String nextWord) {
+        if (metrics == null)
+            return FastTag.tagIds(lexicon, rules, cache, null, words,
+                    prevWord, prevTag, nextWord);
+        final long start = System.nanoTime();
+        final short[] tags = FastTag.tagIds(lexicon, rules, cache, metrics,
+                words, prevWord, prevTag, nextWord);
+        metrics.tagged(System.nanoTime() - start);
+        return tags;
+    }
+
+    /**
+     * @param word
+     *            a single word, tagged without context
+     * @return the word, tagged: word/tag
+     */
+    public String tag(final String word) {
+        return tagSentence(new String[] { word }).taggedWord(0);
+    }
+
+    /**
+     * @param words
+     *            list of strings to tag with parts of speech
+     * @return list of strings for part of speech tokens
+     */
+    public List<String> tag(final List<String> words) {
+        return tagSentence(words.toArray(new String[words.size()]))
+                .toTaggedWords();
+    }
+
+    /**
+     * @param words
+     *            the tokens of one sentence
+     * @return the words and their tag ids
+     */
+    public TaggedSentence tagSentence(final String[] words) {
+        return new TaggedSentence(words,
+                tagIds(words, null, FastTag.NO_TAG, null));
+    }
+
+    /**
+     * Tags a whole document, splitting it at sentence boundaries and tagging
+     * the pieces in parallel on the common fork-join pool. The result is the
+     * same as {@link #tagSentence(String[])}.
+     *
+     * @param words
+     *            the tokens of a whole document
+     * @return the words and their tag ids
+     */
+    public TaggedSentence tagParallel(final String[] words) {
+        final long start = metrics == null ? 0 : System.nanoTime();
+        final short[] tags = FastTag.tagIdsParallel(lexicon, rules, cache,
+                metrics, words, PARALLEL_CHUNK);
+        if (metrics != null)
+            metrics.tagged(System.nanoTime() - start);
+        return new TaggedSentence(words, tags);
+    }
+
+    /**
+     * Same as {@link #tagParallel(String[])}, run on the given pool.
+     */
+    public TaggedSentence tagParallel(final String[] words,
+            final ForkJoinPool pool) {
+        return pool.submit(() -> tagParallel(words)).join();
+    }
+
+    public TaggedSentence tagTextParallel(final String text) {
+        return tagParallel(Tokenizer.wordsToStream(text).toArray(String[]::new));
+    }
+
+    /**
+     * Tags text as it is read, one sentence at a time. Sentences end at ".",
+     * "?" or "!", or after MAX_SENTENCE tokens. The last word and tag of
+     * each sentence are carried into the next, and one token is read ahead
+     * for rules that look at the next word, so the tags are the same as
+     * tagging the whole text at once while memory stays bounded.
+     *
+     * @param reader
+     *            text to tag; it is not closed
+     * @return a lazy, ordered Stream of tagged sentences
+     */
+    public Stream<TaggedSentence> tagSentences(final Reader reader) {
+        return tagSentences(reader, null, null);
+    }
+
+    /**
+     * Same as {@link #tagSentences(Reader)}, for text cut out of a longer
+     * one: rules see prevWord before the first token (its tag as unknown)
+     * and nextWord after the last, either null for none.
+     */
+    Stream<TaggedSentence> tagSentences(final Reader reader,
+            final String prevWord, final String nextWord) {
+        return StreamSupport.stream(new SentenceSpliterator(
+                Tokenizer.wordsToStream(reader).iterator(), prevWord,
+                nextWord), false);
+    }
+
+    /**
+     * @param reader
+     *            text to tag; it is not closed
+     * @return a lazy, ordered Stream of tagged words: word/tag
+     */
+    public Stream<String> tagStream(final Reader reader) {
+        return tagSentences(reader).flatMap(s -> s.toTaggedWords().stream());
+    }
+
+    private final class SentenceSpliterator
+            extends Spliterators.AbstractSpliterator<TaggedSentence> {
+        private final Iterator<String> tokens;
+        private final List<String>     sentence = new ArrayList<>();
+        // the token after the last one, if the text goes on
+        private final String           after;
+        private String                 prevWord;
+        private short                  prevTag  = FastTag.NO_TAG;
+        // the first token of the next sentence, once read
+        private String                 nextWord = null;
+
+        SentenceSpliterator(final Iterator<String> tokens,
+                final String prevWord, final String after) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.tokens = tokens;
+            this.prevWord = prevWord;
+            this.after = after;
+        }
+
+        @Override
+        public boolean tryAdvance(
+                final Consumer<? super TaggedSentence> action) {
+            sentence.clear();
+            if (nextWord == null && tokens.hasNext())
+                nextWord = tokens.next();
+            while (nextWord != null && sentence.size() < MAX_SENTENCE) {
+                final String word = nextWord;
+                sentence.add(word);
+                nextWord = tokens.hasNext() ? tokens.next() : null;
+                if (FastTag.isSentenceEnd(word))
+                    break;
+            }
+            if (sentence.isEmpty())
+                return false;
+            final String[] words = sentence.toArray(
+                    new String[sentence.size()]);
+            final short[] tags = tagIds(words, prevWord, prevTag,
+                    nextWord != null ? nextWord : after);
+            prevWord = words[words.length - 1];
+            prevTag = tags[tags.length - 1];
+            action.accept(new TaggedSentence(words, tags));
+            return true;
+        }
+    }
+
+    public List<String> tagText(final String text) {
+        return tag(Tokenizer.wordsToList(text));
+    }
+
+    /**
+     * @return a session for text that arrives in pieces, such as a chat or
+     *         log stream
+     */
+    public TaggingSession newSession() {
+        return new TaggingSession(this);
+    }
+
+    /**
+     * Buffers for tagging one short text at a time, one set per thread.
+     */
+    private static final class Scratch {
+        private static final ThreadLocal<Scratch> LOCAL = ThreadLocal
+                .withInitial(Scratch::new);
+
+        final TokenScanner scanner = new TokenScanner();
+        String[]           words   = new String[64];
+        short[]            tags    = new short[64];
+        int[]              shapes  = new int[64];
+        // views for tagSpans, made as needed and reused
+        CharSpan[]         spans   = new CharSpan[64];
+        // views pointing into the text being tagged, even if tagging threw
+        int                spanCount;
+        boolean            busy;
+
+        /**
+         * @return this thread's buffers, or new ones if they are in use
+         *         further up the stack (a consumer tagging another batch)
+         */
+        static Scratch acquire() {
+            final Scratch local = LOCAL.get();
+            final Scratch scratch = local.busy ? new Scratch() : local;
+            scratch.busy = true;
+            return scratch;
+        }
+
+        void release(final int n) {
+            Arrays.fill(words, 0, n, null);
+            busy = false;
+        }
+
+        /**
+         * Points the views filled so far away from the caller's text, so it
+         * is not kept reachable.
+         */
+        void releaseSpans() {
+            for (int i = 0; i < spanCount; i++)
+                spans[i].set("", 0, 0);
+            spanCount = 0;
+            busy = false;
+        }
+
+        void grow() {
+            words = Arrays.copyOf(words, words.length * 2);
+            tags = Arrays.copyOf(tags, tags.length * 2);
+            shapes = Arrays.copyOf(shapes, shapes.length * 2);
+            spans = Arrays.copyOf(spans, spans.length * 2);
+        }
+    }
+
+    /**
+     * Tokenizes text into scratch.words and tags it into scratch.tags, as
+     * one sentence.
+     *
+     * @return the number of tokens
+     */
+    private int tagInto(final CharSequence text, final Scratch scratch) {
+        final TokenScanner scanner = scratch.scanner;
+        scanner.reset(text);
+        int n = 0;
+        while (scanner.next()) {
+            if (n == scratch.words.length)
+                scratch.grow();
+            scratch.words[n++] = scanner.token();
+        }
+        final long start = metrics == null ? 0 : System.nanoTime();
+        FastTag.tagRange(lexicon, rules, cache, metrics, scratch.words,
+                scratch.tags, scratch.shapes, 0, n, null, FastTag.NO_TAG,
+                null);
+        if (metrics != null)
+            metrics.tagged(System.nanoTime() - start);
+        return n;
+    }
+
+    /**
+     * Tokenizes text into views in scratch.spans and tags it into
+     * scratch.tags, as one sentence. The views are tagged as they are: the
+     * token cache is keyed on Strings, so it is not used.
+     *
+     * @return the number of tokens
+     */
+    private int tagSpansInto(final CharSequence text, final Scratch scratch) {
+        final TokenScanner scanner = scratch.scanner;
+        scanner.reset(text);
+        int n = 0;
+        while (scanner.next()) {
+            if (n == scratch.spans.length)
+                scratch.grow();
+            if (scratch.spans[n] == null)
+                scratch.spans[n] = new CharSpan();
+            scratch.spans[n++].set(text, (int) scanner.start(),
+                    (int) scanner.end());
+            scratch.spanCount = n;
+        }
+        final long start = metrics == null ? 0 : System.nanoTime();
+        FastTag.tagRange(lexicon, rules, null, metrics, scratch.spans,
+                scratch.tags, null, 0, n, null, FastTag.NO_TAG, null);
+        if (metrics != null)
+            metrics.tagged(System.nanoTime() - start);
+        return n;
+    }
+
+    /**
+     * Tags text like {@link #tagText(String)} and reports each token as its
+     * offsets in text and its tag id, without making a String for any
+     * token: tokens are looked up in the lexicon and tested by the rules as
+     * views of text. The token cache is not used.
+     *
+     * @param consumer
+     *            called once per token, in order
+     * @return the number of tokens
+     */
+    public int tagSpans(final CharSequence text,
+            final SpanConsumer consumer) {
+        final Scratch scratch = Scratch.acquire();
+        try {
+            final int n = tagSpansInto(text, scratch);
+            for (int i = 0; i < n; i++)
+                consumer.accept(scratch.spans[i].start(),
+                        scratch.spans[i].end(), scratch.tags[i]);
+            return n;
+        } finally {
+            scratch.releaseSpans();
+        }
+    }
+
+    /**
+     * @return the tokens of text as offsets and tag ids
+     * @see #tagSpans(CharSequence, SpanConsumer)
+     */
+    public TaggedSpans tagSpans(final CharSequence text) {
+        final Scratch scratch = Scratch.acquire();
+        try {
+            final int n = tagSpansInto(text, scratch);
+            final int[] starts = new int[n];
+            final int[] ends = new int[n];
+            for (int i = 0; i < n; i++) {
+                starts[i] = scratch.spans[i].start();
+                ends[i] = scratch.spans[i].end();
+            }
+            return new TaggedSpans(text, starts, ends,
+                    Arrays.copyOf(scratch.tags, n));
+        } finally {
+            scratch.releaseSpans();
+        }
+    }
+
+    /**
+     * Tags each text on its own, the same as tagSentence of its tokens.
+     * Tokenizing and tagging go through per-thread buffers, so each text
+     * only costs its tokens and its result. The stream is lazy and keeps
+     * the order of texts; pass a parallel stream to tag on several threads.
+     *
+     * @param texts
+     *            short texts such as titles or queries
+     * @return the tagged texts
+     */
+    public Stream<TaggedSentence> tagBatch(
+            final Stream<? extends CharSequence> texts) {
+        return texts.map(text -> {
+            final Scratch scratch = Scratch.acquire();
+            int n = 0;
+            try {
+                n = tagInto(text, scratch);
+                return new TaggedSentence(Arrays.copyOf(scratch.words, n),
+                        Arrays.copyOf(scratch.tags, n));
+            } finally {
+                scratch.release(n);
+            }
+        });
+    }
+
+    /**
+     * @return the tagged texts, in order
+     * @see #tagBatch(Stream)
+     */
+    public List<TaggedSentence> tagBatch(
+            final Collection<? extends CharSequence> texts) {
+        final List<TaggedSentence> res = new ArrayList<>(texts.size());
+        tagBatch(texts.stream()).forEachOrdered(res::add);
+        return res;
+    }
+
+    /**
+     * Tags each text on its own, like {@link #tagBatch(Stream)}, and hands
+     * the result to consumer in this thread's buffers instead of copying
+     * it. Apart from the token Strings, tagging a text allocates nothing.
+     *
+     * @param texts
+     *            short texts such as titles or queries
+     * @param consumer
+     *            called once per text, in order
+     */
+    public void tagBatch(final Iterable<? extends CharSequence> texts,
+            final BatchConsumer consumer) {
+        final Scratch scratch = Scratch.acquire();
+        int index = 0, n = 0;
+        try {
+            for (final CharSequence text : texts) {
+                Arrays.fill(scratch.words, 0, n, null);
+                n = tagInto(text, scratch);
+                consumer.accept(index++, scratch.words, scratch.tags, n);
+            }
+        } finally {
+            scratch.release(n);
+        }
+    }
+
+    public Stream<String> tagStream(final String text) {
+        return tagText(text).stream();
+    }
+}
@@ -0,0 +1,207 @@
+package com.ooba.nlp.fasttag;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import com.ooba.nlp.util.Histogram;
+
+/**
+ * What a {@link Tagger} has been doing: how many tokens it tagged, how many
+ * of them missed the lexicon (and of those, how many got "^" for a single
+ * char, and how many a guessing lexicon tagged other than NN), how often
+ * each rule fired, and how long each tagging call took. Counters are
+ * LongAdders and latencies go to a {@link Histogram}, so threads tagging at
+ * once do not contend.
+ * <p/>
+ * Metrics are off unless a tagger is made with {@link Tagger#withMetrics()};
+ * a tagger without them only ever tests for null on a lexicon miss or a
+ * rule firing. The counts can be read here or, after
+ * {@link #register(String)}, over JMX.
+ */
+public final class TaggerMetrics implements TaggerMetricsMXBean {
+    private static final double NANOS_PER_MICRO = 1000.0;
+
+    private final RuleSet     rules;
+    private final LongAdder   tokens      = new LongAdder();
+    private final LongAdder   misses      = new LongAdder();
+    private final LongAdder   singleChars = new LongAdder();
+    private final LongAdder   guessed     = new LongAdder();
+    // per rule, in file order
+    private final LongAdder[] fired;
+    private final Histogram   latency     = new Histogram();
+
+    /**
+     * @param rules
+     *            the rules of the tagger these metrics are for
+     */
+    TaggerMetrics(final RuleSet rules) {
+        this.rules = rules;
+        fired = new LongAdder[rules.size()];
+        for (int r = 0; r < fired.length; r++)
+            fired[r] = new LongAdder();
+    }
+
+    void tokens(final int n) {
+        tokens.add(n);
+    }
+
+    /**
+     * @param tag
+     *            what rule 0 gave word
+     */
+    void lexiconMiss(final CharSequence word, final short tag) {
+        misses.increment();
+        if (word.length() == 1)
+            singleChars.increment();
+        else if (tag != FastTag.defaultTag(word))
+            guessed.increment();
+    }
+
+    void ruleFired(final int r) {
+        fired[r].increment();
+    }
+
+    void tagged(final long nanos) {
+        latency.record(nanos);
+    }
+
+    @Override
+    public long getTokens() {
+        return tokens.sum();
+    }
+
+    /**
+     * @return tokens that were not in the lexicon, so that rule 0 gave them
+     *         NN, "^" or a guess
+     */
+    @Override
+    public long getLexiconMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the lexicon misses that got "^" for being a single char
+     */
+    @Override
+    public long getUnknownSingleChars() {
+        return singleChars.sum();
+    }
+
+    /**
+     * @return the lexicon misses that a lexicon made by
+     *         {@link Lexicon#withGuesses()} tagged other than NN
+     */
+    @Override
+    public long getGuessedTags() {
+        return guessed.sum();
+    }
+
+    /**
+     * @return the share of tokens found in the lexicon, or 0 before the
+     *         first token
+     */
+    @Override
+    public double getLexiconHitRate() {
+        final long n = getTokens();
+        return n == 0 ? 0 : 1 - (double) getLexiconMisses() / n;
+    }
+
+    @Override
+    public String[] getRules() {
+        final String[] res = new String[fired.length];
+        for (int r = 0; r < res.length; r++)
+            res[r] = rules.rule(r);
+        return res;
+    }
+
+    @Override
+    public long[] getRuleFirings() {
+        final long[] res = new long[fired.length];
+        for (int r = 0; r < res.length; r++)
+            res[r] = fired[r].sum();
+        return res;
+    }
+
+    /**
+     * @return latencies in nanoseconds of the tagging calls: one per
+     *         sentence, streamed sentence, batch text or parallel document
+     */
+    public Histogram latency() {
+        return latency;
+    }
+
+    @Override
+    public long getTaggings() {
+        return latency.count();
+    }
+
+    @Override
+    public double getMeanLatencyMicros() {
+        return latency.mean() / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getP50LatencyMicros() {
+        return latency.percentile(50) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getP99LatencyMicros() {
+        return latency.percentile(99) / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getMaxLatencyMicros() {
+        return latency.max() / NANOS_PER_MICRO;
+    }
+
+    /**
+     * Zeroes every count. Tagging that runs meanwhile may or may not be
+     * counted.
+     */
+    @Override
+    public void reset() {
+        tokens.reset();
+        misses.reset();
+        singleChars.reset();
+        guessed.reset();
+        for (final LongAdder f : fired)
+            f.reset();
+        latency.reset();
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server.
+     *
+     * @param name
+     *            tells taggers apart in the name
+     *            com.ooba.nlp.fasttag:type=TaggerMetrics,name=&lt;name&gt;
+     * @return the name registered
+     */
+    public ObjectName register(final String name) throws JMException {
+        final ObjectName objectName = new ObjectName(
+                "com.ooba.nlp.fasttag:type=TaggerMetrics,name="
+                        + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+                objectName);
+        return objectName;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder(String.format(
+                "TaggerMetrics[tokens=%d, lexiconHitRate=%.4f,"
+                        + " lexiconMisses=%d (%d \"^\", %d guessed),"
+                        + " latency: %s]",
+                getTokens(), getLexiconHitRate(), getLexiconMisses(),
+                getUnknownSingleChars(), getGuessedTags(), latency));
+        final long[] firings = getRuleFirings();
+        for (int r = 0; r < firings.length; r++)
+            sb.append(String.format("%n  %10d  %s", firings[r],
+                    rules.rule(r)));
+        return sb.toString();
+    }
+}
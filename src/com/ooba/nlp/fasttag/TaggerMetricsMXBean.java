@@ -0,0 +1,38 @@
+package com.ooba.nlp.fasttag;
+
+/**
+ * The JMX view of {@link TaggerMetrics}. Latencies are in microseconds.
+ */
+public interface TaggerMetricsMXBean {
+    long getTokens();
+
+    long getLexiconMisses();
+
+    long getUnknownSingleChars();
+
+    long getGuessedTags();
+
+    double getLexiconHitRate();
+
+    /**
+     * @return the rules, in order, as written in the rules file
+     */
+    String[] getRules();
+
+    /**
+     * @return how often each rule of {@link #getRules()} fired
+     */
+    long[] getRuleFirings();
+
+    long getTaggings();
+
+    double getMeanLatencyMicros();
+
+    double getP50LatencyMicros();
+
+    double getP99LatencyMicros();
+
+    double getMaxLatencyMicros();
+
+    void reset();
+}
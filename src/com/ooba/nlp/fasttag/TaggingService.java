@@ -0,0 +1,430 @@
+package com.ooba.nlp.fasttag;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import com.ooba.nlp.util.Histogram;
+
+/**
+ * Tags texts asynchronously for a request-serving process.
+ * <p/>
+ * Submitted texts wait in a bounded queue. A fixed number of workers each
+ * take whatever is queued, up to maxBatch texts, and tag it in one
+ * {@link Tagger#tagBatch(Iterable, BatchConsumer)} pass, so a burst of
+ * small requests costs one pass per batch rather than one hand-off per
+ * text. When the queue is full, {@link #submit(CharSequence)} waits for
+ * room and {@link #trySubmit(CharSequence)} fails at once, which pushes
+ * back on callers instead of letting work pile up.
+ * <p/>
+ * Futures are completed on the worker threads, so dependent stages that
+ * block or do heavy work should use the *Async variants. The service keeps
+ * latency histograms in nanoseconds: {@link #latency()} from submit to
+ * completion and {@link #waitTime()} from submit to the start of tagging.
+ */
+public final class TaggingService implements AutoCloseable {
+    // how often idle workers look for close()
+    private static final long POLL_MILLIS = 50;
+
+    /**
+     * How a service runs. Instances are immutable; each with method returns
+     * a changed copy.
+     */
+    public static final class Config {
+        private final Executor executor;
+        private final boolean  virtualThreads;
+        private final int      workers;
+        private final int      queueCapacity;
+        private final int      maxBatch;
+
+        /**
+         * One worker per processor on the service's own daemon threads, a
+         * queue of 4096 texts and batches of up to 64 texts.
+         */
+        public Config() {
+            this(null, false, Runtime.getRuntime().availableProcessors(),
+                    4096, 64);
+        }
+
+        private Config(final Executor executor, final boolean virtualThreads,
+                final int workers, final int queueCapacity,
+                final int maxBatch) {
+            if (workers <= 0 || queueCapacity <= 0 || maxBatch <= 0)
+                throw new IllegalArgumentException(
+                        "workers, queueCapacity and maxBatch must be positive");
+            this.executor = executor;
+            this.virtualThreads = virtualThreads;
+            this.workers = workers;
+            this.queueCapacity = queueCapacity;
+            this.maxBatch = maxBatch;
+        }
+
+        /**
+         * @param executor
+         *            runs the workers, each of which occupies a thread for
+         *            the life of the service; close() does not shut it down
+         */
+        public Config withExecutor(final Executor executor) {
+            return new Config(executor, false, workers, queueCapacity,
+                    maxBatch);
+        }
+
+        /**
+         * Runs the workers on virtual threads when the JDK has them (21 and
+         * later), and on the service's own platform threads otherwise.
+         */
+        public Config withVirtualThreads() {
+            return new Config(null, true, workers, queueCapacity, maxBatch);
+        }
+
+        public Config withWorkers(final int workers) {
+            return new Config(executor, virtualThreads, workers,
+                    queueCapacity, maxBatch);
+        }
+
+        /**
+         * @param queueCapacity
+         *            most texts waiting to be tagged
+         */
+        public Config withQueueCapacity(final int queueCapacity) {
+            return new Config(executor, virtualThreads, workers,
+                    queueCapacity, maxBatch);
+        }
+
+        /**
+         * @param maxBatch
+         *            most texts a worker tags in one pass
+         */
+        public Config withMaxBatch(final int maxBatch) {
+            return new Config(executor, virtualThreads, workers,
+                    queueCapacity, maxBatch);
+        }
+    }
+
+    private static final class Request {
+        final CharSequence                      text;
+        final CompletableFuture<TaggedSentence> future;
+        final long                              submitted;
+
+        Request(final CharSequence text) {
+            this.text = text;
+            future = new CompletableFuture<>();
+            submitted = System.nanoTime();
+        }
+    }
+
+    private final Supplier<Tagger>       tagger;
+    private final BlockingQueue<Request> queue;
+    private final int                    maxBatch;
+    // the executor this service made for itself, or null
+    private final ExecutorService        owned;
+    // counted down as each worker stops or fails to start
+    private final CountDownLatch         stopped;
+    private final Set<Thread>            workerThreads;
+    private volatile boolean             closed;
+
+    private final Histogram latency  = new Histogram();
+    private final Histogram waitTime = new Histogram();
+    private final LongAdder batches  = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private TaggingService(final Supplier<Tagger> tagger,
+            final Config config) {
+        this.tagger = tagger;
+        queue = new ArrayBlockingQueue<>(config.queueCapacity);
+        maxBatch = config.maxBatch;
+        stopped = new CountDownLatch(config.workers);
+        workerThreads = ConcurrentHashMap.newKeySet();
+        if (config.executor != null)
+            owned = null;
+        else {
+            final ExecutorService virtual = config.virtualThreads
+                    ? virtualThreadExecutor() : null;
+            owned = virtual != null ? virtual
+                    : Executors.newFixedThreadPool(config.workers,
+                            daemonThreads());
+        }
+        final Executor executor = owned != null ? owned : config.executor;
+        int started = 0;
+        try {
+            for (; started < config.workers; started++)
+                executor.execute(this::work);
+        } catch (final RejectedExecutionException e) {
+            // close() must not wait for workers that will never run
+            for (int w = started; w < config.workers; w++)
+                stopped.countDown();
+            if (started == 0) {
+                closed = true;
+                if (owned != null)
+                    owned.shutdown();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Starts a service with the default {@link Config}.
+     */
+    public static TaggingService start(final Tagger tagger) {
+        return start(() -> tagger, new Config());
+    }
+
+    /**
+     * @param tagger
+     *            asked for the tagger to use at the start of every batch; pass
+     *            {@code reloadable::current} to follow a
+     *            {@link ReloadableTagger}
+     * @throws RejectedExecutionException
+     *             if the executor would not run a single worker; when it
+     *             runs only some, the service carries on with those
+     */
+    public static TaggingService start(final Supplier<Tagger> tagger,
+            final Config config) {
+        return new TaggingService(tagger, config);
+    }
+
+    /**
+     * @return an executor that starts a virtual thread per task, or null
+     *         before JDK 21
+     */
+    static ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod(
+                    "newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (final ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory daemonThreads() {
+        final AtomicInteger n = new AtomicInteger();
+        return r -> {
+            final Thread t = new Thread(r,
+                    "fasttag-worker-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * Queues text for tagging, waiting for room if the queue is full.
+     *
+     * @return the tagged text, completed on a worker thread; it fails with
+     *         RejectedExecutionException if the service is closed, and with
+     *         CancellationException if this thread is interrupted while
+     *         waiting (the interrupt is kept)
+     */
+    public CompletableFuture<TaggedSentence> submit(final CharSequence text) {
+        final Request request = new Request(text);
+        if (closed)
+            return reject(request);
+        try {
+            while (!queue.offer(request, POLL_MILLIS, TimeUnit.MILLISECONDS))
+                if (closed)
+                    return reject(request);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            request.future.cancel(false);
+            return request.future;
+        }
+        return recheck(request);
+    }
+
+    /**
+     * Queues text for tagging unless the queue is full.
+     *
+     * @return the tagged text, completed on a worker thread; it fails at
+     *         once with RejectedExecutionException if the queue is full or
+     *         the service is closed
+     */
+    public CompletableFuture<TaggedSentence> trySubmit(
+            final CharSequence text) {
+        final Request request = new Request(text);
+        if (closed || !queue.offer(request))
+            return reject(request);
+        return recheck(request);
+    }
+
+    // a request queued just as close() drained the queue would never run
+    private CompletableFuture<TaggedSentence> recheck(final Request request) {
+        if (closed && queue.remove(request))
+            return reject(request);
+        return request.future;
+    }
+
+    private CompletableFuture<TaggedSentence> reject(final Request request) {
+        rejected.increment();
+        request.future.completeExceptionally(new RejectedExecutionException(
+                closed ? "tagging service is closed"
+                        : "tagging queue is full"));
+        return request.future;
+    }
+
+    private void work() {
+        final List<Request> batch = new ArrayList<>(maxBatch);
+        final List<CharSequence> texts = new AbstractList<CharSequence>() {
+            @Override
+            public CharSequence get(final int index) {
+                return batch.get(index).text;
+            }
+
+            @Override
+            public int size() {
+                return batch.size();
+            }
+        };
+        workerThreads.add(Thread.currentThread());
+        try {
+            while (true) {
+                final Request first = queue.poll(POLL_MILLIS,
+                        TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (closed)
+                        break;
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+                run(batch, texts);
+                batch.clear();
+            }
+        } catch (final InterruptedException e) {
+            // the executor is shutting down
+        } finally {
+            workerThreads.remove(Thread.currentThread());
+            stopped.countDown();
+        }
+    }
+
+    private void run(final List<Request> batch,
+            final List<CharSequence> texts) {
+        batches.increment();
+        final long start = System.nanoTime();
+        for (final Request request : batch)
+            waitTime.record(start - request.submitted);
+        try {
+            tagger.get().tagBatch(texts, (index, words, tags, length) -> {
+                final Request request = batch.get(index);
+                final TaggedSentence tagged = new TaggedSentence(
+                        Arrays.copyOf(words, length),
+                        Arrays.copyOf(tags, length));
+                latency.record(System.nanoTime() - request.submitted);
+                request.future.complete(tagged);
+            });
+        } catch (final RuntimeException e) {
+            // fail whatever the exception cut off
+            for (final Request request : batch)
+                request.future.completeExceptionally(e);
+        } catch (final Error e) {
+            for (final Request request : batch)
+                request.future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * @return texts waiting to be tagged
+     */
+    public int queued() {
+        return queue.size();
+    }
+
+    /**
+     * @return submit to completion, in nanoseconds, of every text tagged
+     */
+    public Histogram latency() {
+        return latency;
+    }
+
+    /**
+     * @return submit to start of tagging, in nanoseconds
+     */
+    public Histogram waitTime() {
+        return waitTime;
+    }
+
+    /**
+     * @return the number of tagging passes so far; latency().count()
+     *         divided by this is the mean batch size
+     */
+    public long batches() {
+        return batches.sum();
+    }
+
+    /**
+     * @return the number of texts turned away because the queue was full or
+     *         the service closed
+     */
+    public long rejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Stops taking texts, waits for the queued ones to be tagged and stops
+     * the workers. An executor passed in the Config is left running.
+     * <p/>
+     * Called on a worker thread, for instance from a dependent stage of a
+     * returned future, it does not wait: the workers finish the queue and
+     * stop on their own.
+     */
+    @Override
+    public void close() {
+        close(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Like {@link #close()}, but gives up waiting for the workers after the
+     * timeout; they still finish the queue and stop afterwards.
+     *
+     * @return true if every worker stopped in time, false on timeout or
+     *         when called on a worker thread
+     */
+    public boolean close(final long timeout, final TimeUnit unit) {
+        closed = true;
+        if (owned != null)
+            owned.shutdown();
+        if (workerThreads.contains(Thread.currentThread()))
+            return false;
+        final long end = System.nanoTime() + unit.toNanos(timeout);
+        boolean interrupted = false;
+        boolean done;
+        while (true)
+            try {
+                done = stopped.await(end - System.nanoTime(),
+                        TimeUnit.NANOSECONDS);
+                break;
+            } catch (final InterruptedException e) {
+                interrupted = true;
+            }
+        if (done)
+            for (Request request; (request = queue.poll()) != null;)
+                reject(request);
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        return done;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "TaggingService[queued=%d, batches=%d, rejected=%d,"
+                        + " latency: %s]",
+                queued(), batches(), rejected(), latency);
+    }
+}
@@ -0,0 +1,114 @@
+package com.ooba.nlp.fasttag;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ooba.nlp.util.TokenScanner;
+
+/**
+ * Tags text that arrives in pieces, such as a chat or log stream, without
+ * going back over what came before. Feed the pieces to
+ * {@link #append(CharSequence)} in order; each call returns the tokens
+ * whose tags are now settled. {@link #finish()} returns the rest. Together
+ * they give the same tokens and tags as tagging the whole text at once.
+ * <p/>
+ * Between calls a session keeps only what the rules and the tokenizer need:
+ * the last tagged word and its tag (for PREVTAG and PREVWORD rules), the
+ * text of a token that may still go on in the next piece, and, if the rules
+ * look at the next token, the one token waiting for it. The work per piece
+ * is proportional to the piece.
+ * <p/>
+ * Sessions come from {@link Tagger#newSession()} and are not thread-safe.
+ */
+public final class TaggingSession {
+    private static final TaggedSentence NONE = new TaggedSentence(
+            new String[0], new short[0]);
+
+    private final Tagger        tagger;
+    private final boolean       looksAhead;
+    private final TokenScanner  scanner = new TokenScanner();
+    // text from the first token that may go on in the next piece
+    private final StringBuilder tail    = new StringBuilder();
+    // complete tokens of the current call
+    private final List<String>  words   = new ArrayList<>();
+
+    // a complete token whose tag depends on the token after it
+    private String held;
+    private String prevWord;
+    private short  prevTag = FastTag.NO_TAG;
+
+    TaggingSession(final Tagger tagger) {
+        this.tagger = tagger;
+        looksAhead = tagger.rules().looksAhead();
+    }
+
+    /**
+     * Adds the next piece of text. A token that reaches the end of text may
+     * go on in the next piece (as "walk" may become "walking"), so it is
+     * held back until a separator or {@link #finish()} ends it.
+     *
+     * @return the tokens settled by text, possibly none
+     */
+    public TaggedSentence append(final CharSequence text) {
+        tail.append(text);
+        scanner.reset(tail);
+        final int n = tail.length();
+        int cut = n;
+        int lastEnd = -1;
+        while (scanner.next()) {
+            final int start = (int) scanner.start();
+            if (scanner.end() == n) {
+                // "dog." was split into "dog" and "."; "dog.com" would not be
+                if (start == lastEnd && scanner.length() == 1
+                        && scanner.charAt(0) == '.') {
+                    final String word = words.remove(words.size() - 1);
+                    cut = start - word.length();
+                } else
+                    cut = start;
+                break;
+            }
+            words.add(scanner.token());
+            lastEnd = (int) scanner.end();
+        }
+        tail.delete(0, cut);
+        return emit(false);
+    }
+
+    /**
+     * Ends the text: tags whatever was held back. The session can then
+     * start on a new text, with no context carried over.
+     *
+     * @return the remaining tokens, possibly none
+     */
+    public TaggedSentence finish() {
+        scanner.reset(tail);
+        while (scanner.next())
+            words.add(scanner.token());
+        tail.setLength(0);
+        final TaggedSentence rest = emit(true);
+        prevWord = null;
+        prevTag = FastTag.NO_TAG;
+        return rest;
+    }
+
+    private TaggedSentence emit(final boolean end) {
+        if (held != null)
+            words.add(0, held);
+        held = null;
+        int m = words.size();
+        String nextWord = null;
+        if (!end && looksAhead && m > 0)
+            held = nextWord = words.get(--m);
+        if (m == 0) {
+            words.clear();
+            return NONE;
+        }
+        final String[] settled = words.subList(0, m).toArray(new String[m]);
+        words.clear();
+        final short[] tags = tagger.tagIds(settled, prevWord, prevTag,
+                nextWord);
+        prevWord = settled[m - 1];
+        prevTag = tags[m - 1];
+        return new TaggedSentence(settled, tags);
+    }
+}
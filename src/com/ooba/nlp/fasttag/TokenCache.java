@@ -0,0 +1,174 @@
+package com.ooba.nlp.fasttag;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, thread-safe, least-recently-used cache of what the tagger
+ * works out about a token on its own, without context: its rule 0 tag and
+ * whether that tag came from the lexicon, and which word tests (SUFFIX,
+ * PREFIX, NUMBER) of a {@link RuleSet} it passes.
+ * Text where the same unknown or suffix-ruled tokens keep coming back (logs,
+ * chat) can then skip the lexicon probes and the string tests for every
+ * repeat. The test outcomes only make sense for the rules they were
+ * computed with, so a cache belongs to a single RuleSet.
+ * <p/>
+ * The cache is split into independently locked segments, each an
+ * access-ordered LinkedHashMap, so eviction is LRU per segment and threads
+ * tagging different words rarely contend. The segments' limits add up to
+ * the capacity, and a full segment evicts before it inserts, so the cache
+ * never holds more than its capacity.
+ */
+public final class TokenCache {
+    /** Returned by {@link #get(String)} when the token is not cached. */
+    static final int MISS = -1;
+
+    // at most; a smaller cache gets fewer, so that none is empty
+    private static final int SEGMENTS = 16;
+
+    private final int       capacity;
+    private final Segment[] segments;
+    private final LongAdder hits      = new LongAdder();
+    private final LongAdder misses    = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param capacity
+     *            most tokens held at once; must be positive
+     */
+    public TokenCache(final int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException(
+                    "capacity must be positive: " + capacity);
+        this.capacity = capacity;
+        final int n = Math.min(SEGMENTS, Integer.highestOneBit(capacity));
+        segments = new Segment[n];
+        for (int i = 0; i < n; i++)
+            segments[i] = new Segment(capacity / n
+                    + (i < capacity % n ? 1 : 0));
+    }
+
+    private static final class Segment
+            extends LinkedHashMap<String, Integer> {
+        private static final long serialVersionUID = 1L;
+        private final int         max;
+
+        Segment(final int max) {
+            super(16, 0.75f, true);
+            this.max = max;
+        }
+    }
+
+    private Segment segment(final String word) {
+        final int h = word.hashCode();
+        return segments[(h ^ (h >>> 16)) & (segments.length - 1)];
+    }
+
+    /**
+     * @return the packed entry for word (see
+     *         {@link #pack(short, int, boolean)}), or {@link #MISS}
+     */
+    int get(final String word) {
+        final Segment s = segment(word);
+        final Integer entry;
+        synchronized (s) {
+            entry = s.get(word);
+        }
+        if (entry == null) {
+            misses.increment();
+            return MISS;
+        }
+        hits.increment();
+        return entry;
+    }
+
+    void put(final String word, final int entry) {
+        final Segment s = segment(word);
+        synchronized (s) {
+            if (s.size() >= s.max && !s.containsKey(word)) {
+                // the first entry in access order is the least recent
+                final Iterator<String> eldest = s.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+                evictions.increment();
+            }
+            s.put(word, entry);
+        }
+    }
+
+    /**
+     * @param shape
+     *            {@link RuleSet#CACHED_TESTS} bits of word tests
+     * @param unknown
+     *            true if tag is the default for a word not in the lexicon
+     */
+    static int pack(final short tag, final int shape, final boolean unknown) {
+        return (unknown ? 1 << 31 : 0) | shape << 16 | tag;
+    }
+
+    static short tag(final int entry) {
+        return (short) entry;
+    }
+
+    static int shape(final int entry) {
+        return entry >>> 16 & 0x7FFF;
+    }
+
+    static boolean unknown(final int entry) {
+        return entry < 0;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the number of tokens currently cached
+     */
+    public int size() {
+        int n = 0;
+        for (final Segment s : segments)
+            synchronized (s) {
+                n += s.size();
+            }
+        return n;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return hits over lookups, or 0 before the first lookup
+     */
+    public double hitRate() {
+        final long h = hits(), total = h + misses();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * Drops every cached token. The statistics are kept.
+     */
+    public void clear() {
+        for (final Segment s : segments)
+            synchronized (s) {
+                s.clear();
+            }
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "TokenCache[size=%d/%d, hits=%d, misses=%d, evictions=%d]",
+                size(), capacity, hits(), misses(), evictions());
+    }
+}
@@ -0,0 +1,196 @@
+package com.ooba.nlp.fasttag;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.ooba.nlp.util.TagIds;
+
+/**
+ * Guesses the tag of a word that is not in the lexicon from its shape
+ * (holding a digit, holding a hyphen, capitalized, or none of these) and its
+ * last three chars: the guess is the most common first tag among lexicon
+ * words of that shape with that suffix. A suffix shared by fewer than
+ * MIN_COUNT words backs off to its last two chars, then one, then to the
+ * shape alone.
+ * <p/>
+ * All of that is worked out once, into one tag per (shape, suffix) context,
+ * so a guess is an index computed from the word and a single array read.
+ * {@link LexiconCompiler} stores the table with a compiled lexicon; for any
+ * other lexicon {@link Lexicon#withGuesses()} trains it on the spot. Either
+ * way the same words give the same table.
+ */
+final class UnknownWordModel {
+    static final int SHAPES = 4;
+    // a suffix char: 0 past the start of a short word, 1-26 for a letter in
+    // either case, 27 for anything else
+    private static final int CHARS  = 28;
+    private static final int SUFFIX = 3;
+    /** Number of contexts, and so of tags in a model. */
+    static final int         SIZE   = SHAPES * CHARS * CHARS * CHARS;
+
+    private static final int LOWER       = 0;
+    private static final int CAPITALIZED = 1;
+    private static final int HYPHEN      = 2;
+    private static final int DIGIT       = 3;
+
+    // fewest lexicon words for a context to be trusted over a shorter one
+    private static final int    MIN_COUNT = 4;
+    // for a shape no lexicon word has
+    private static final String FALLBACK  = "NN";
+
+    private final short[] tags;
+
+    /**
+     * @param tags
+     *            {@link TagIds} id for each context, by
+     *            {@link #index(CharSequence)}
+     */
+    UnknownWordModel(final short[] tags) {
+        if (tags.length != SIZE)
+            throw new IllegalArgumentException(
+                    "expected " + SIZE + " tags, got " + tags.length);
+        this.tags = tags;
+    }
+
+    /**
+     * @return the guessed tag id for word
+     */
+    short tag(final CharSequence word) {
+        return tags[index(word)];
+    }
+
+    /**
+     * @return the context of word: its shape, then its last, second to last
+     *         and third to last chars, as digits of a mixed-radix number
+     */
+    static int index(final CharSequence word) {
+        final int n = word.length();
+        int shape = LOWER;
+        for (int i = 0; i < n; i++) {
+            final char c = word.charAt(i);
+            if (c >= '0' && c <= '9') {
+                shape = DIGIT;
+                break;
+            }
+            if (c == '-')
+                shape = HYPHEN;
+        }
+        if (shape == LOWER && n > 0 && Character.isUpperCase(word.charAt(0)))
+            shape = CAPITALIZED;
+        int index = shape;
+        for (int k = 1; k <= SUFFIX; k++)
+            index = index * CHARS + (k <= n ? code(word.charAt(n - k)) : 0);
+        return index;
+    }
+
+    private static int code(final char c) {
+        if (c >= 'a' && c <= 'z')
+            return c - 'a' + 1;
+        if (c >= 'A' && c <= 'Z')
+            return c - 'A' + 1;
+        return CHARS - 1;
+    }
+
+    /**
+     * Counts the first tag of every lexicon word longer than one char (one
+     * char words are never guessed) by context.
+     *
+     * @return the guessed tag for each context, by index
+     */
+    static String[] train(final Map<String, String[]> lexicon) {
+        final Counts counts = new Counts();
+        lexicon.forEach((word, tags) -> {
+            if (tags.length > 0)
+                counts.count(word, tags[0]);
+        });
+        return counts.guesses();
+    }
+
+    /**
+     * Same as {@link #train(Map)}, over a {@link Lexicon}.
+     */
+    static UnknownWordModel train(final Lexicon lexicon) {
+        final Counts counts = new Counts();
+        lexicon.forEach((word, tags) -> {
+            if (tags.length > 0)
+                counts.count(word, TagIds.name(tags[0]));
+        });
+        return new UnknownWordModel(TagIds.ids(counts.guesses()));
+    }
+
+    private static final class Counts {
+        private final Map<String, Integer> tagIndex = new LinkedHashMap<>();
+        // counts[k] holds the contexts with k suffix chars
+        private final Map<Integer, int[]>[] counts  = newCounts();
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        private static Map<Integer, int[]>[] newCounts() {
+            final Map<Integer, int[]>[] counts = new Map[SUFFIX + 1];
+            for (int k = 0; k <= SUFFIX; k++)
+                counts[k] = new HashMap<>();
+            return counts;
+        }
+
+        void count(final String word, final String tag) {
+            if (word.length() < 2)
+                return;
+            final int t = tagIndex.computeIfAbsent(tag,
+                    name -> tagIndex.size());
+            final int index = index(word);
+            for (int k = 0; k <= SUFFIX; k++) {
+                final int key = prefix(index, k);
+                counts[k].put(key, add(counts[k].get(key), t));
+            }
+        }
+
+        String[] guesses() {
+            final String[] names = tagIndex.keySet().toArray(new String[0]);
+            final String[] model = new String[SIZE];
+            for (int index = 0; index < SIZE; index++) {
+                model[index] = FALLBACK;
+                for (int k = SUFFIX; k >= 0; k--) {
+                    final int[] c = counts[k].get(prefix(index, k));
+                    if (c != null && (total(c) >= MIN_COUNT || k == 0)) {
+                        model[index] = names[argMax(c, names)];
+                        break;
+                    }
+                }
+            }
+            return model;
+        }
+    }
+
+    // the context of index cut down to its shape and first k suffix chars
+    private static int prefix(final int index, final int k) {
+        int p = index;
+        for (int i = k; i < SUFFIX; i++)
+            p /= CHARS;
+        return p;
+    }
+
+    private static int[] add(final int[] counts, final int tag) {
+        final int[] c = counts == null ? new int[tag + 1]
+                : tag < counts.length ? counts : Arrays.copyOf(counts, tag + 1);
+        c[tag]++;
+        return c;
+    }
+
+    private static int total(final int[] counts) {
+        int n = 0;
+        for (final int c : counts)
+            n += c;
+        return n;
+    }
+
+    // the most counted tag; ties go to the alphabetically first name
+    private static int argMax(final int[] counts, final String[] names) {
+        int best = 0;
+        for (int t = 1; t < counts.length; t++)
+            if (counts[t] > counts[best] || counts[t] == counts[best]
+                    && names[t].compareTo(names[best]) < 0)
+                best = t;
+        return best;
+    }
+}
@@ -0,0 +1,128 @@
+package com.ooba.nlp.util;
+
+/**
+ * A CharSequence view of text[start, end): reading it reads text, and
+ * nothing is copied until {@link #toString()}. Views compare and hash by
+ * content, with the same hash as the equal String, but are only equal to
+ * other CharSpans; use {@link #contentEquals(CharSequence)} against
+ * Strings.
+ * <p/>
+ * A view can be pointed at another range with
+ * {@link #set(CharSequence, int, int)}, so a tagger can keep one per token
+ * slot and reuse them from text to text. Views handed out by the tagger
+ * are only valid for the call they are handed to.
+ */
+public final class CharSpan implements CharSequence {
+    private CharSequence text;
+    private int          start;
+    private int          end;
+
+    public CharSpan() {
+        this("", 0, 0);
+    }
+
+    private CharSpan(final CharSequence text, final int start,
+            final int end) {
+        this.text = text;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * @throws IndexOutOfBoundsException
+     *             unless 0 <= start <= end <= text.length()
+     */
+    public static CharSpan of(final CharSequence text, final int start,
+            final int end) {
+        return new CharSpan().set(text, start, end);
+    }
+
+    /**
+     * Points this view at text[start, end).
+     *
+     * @return this
+     * @throws IndexOutOfBoundsException
+     *             unless 0 <= start <= end <= text.length()
+     */
+    public CharSpan set(final CharSequence text, final int start,
+            final int end) {
+        if (start < 0 || start > end || end > text.length())
+            throw new IndexOutOfBoundsException(
+                    "[" + start + ", " + end + ") of " + text.length());
+        this.text = text;
+        this.start = start;
+        this.end = end;
+        return this;
+    }
+
+    /**
+     * @return the text this views
+     */
+    public CharSequence text() {
+        return text;
+    }
+
+    /**
+     * @return offset of the first char in {@link #text()}
+     */
+    public int start() {
+        return start;
+    }
+
+    /**
+     * @return offset just past the last char in {@link #text()}
+     */
+    public int end() {
+        return end;
+    }
+
+    @Override
+    public int length() {
+        return end - start;
+    }
+
+    @Override
+    public char charAt(final int index) {
+        if (index < 0 || index >= end - start)
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        return text.charAt(start + index);
+    }
+
+    @Override
+    public CharSpan subSequence(final int from, final int to) {
+        if (from < 0 || from > to || to > end - start)
+            throw new IndexOutOfBoundsException(
+                    "[" + from + ", " + to + ") of " + (end - start));
+        return new CharSpan(text, start + from, start + to);
+    }
+
+    /**
+     * @return true if s has the same chars as this view
+     */
+    public boolean contentEquals(final CharSequence s) {
+        if (s.length() != end - start)
+            return false;
+        for (int i = start, j = 0; i < end; i++, j++)
+            if (text.charAt(i) != s.charAt(j))
+                return false;
+        return true;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        return o instanceof CharSpan && contentEquals((CharSpan) o);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = 0;
+        for (int i = start; i < end; i++)
+            h = 31 * h + text.charAt(i);
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        return text.subSequence(start, end).toString();
+    }
+}
@@ -0,0 +1,115 @@
+package com.ooba.nlp.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe histogram of non-negative longs, typically latencies in
+ * nanoseconds. Values are counted in log-linear buckets, four per power of
+ * two, so percentiles are exact below 8 and within 25% above, over the whole
+ * long range, in a fixed 2KB of counters. Recording is a few atomic adds and
+ * never blocks.
+ */
+public final class Histogram {
+    // 4 buckets for 0-3, then 4 per power of two up to 2^62
+    private static final int BUCKETS = 4 * 62;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder       count  = new LongAdder();
+    private final LongAdder       sum    = new LongAdder();
+    private final AtomicLong      max    = new AtomicLong();
+
+    private static int bucket(final long value) {
+        if (value < 4)
+            return (int) value;
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int sub = (int) (value >>> (exponent - 2)) & 3;
+        return (exponent - 1) * 4 + sub;
+    }
+
+    // smallest value that falls in bucket b
+    private static long lowest(final int b) {
+        if (b < 4)
+            return b;
+        return (long) (4 + (b & 3)) << (b / 4 - 1);
+    }
+
+    /**
+     * @param value
+     *            a non-negative value; negative ones count as 0
+     */
+    public void record(final long value) {
+        final long v = Math.max(0, value);
+        counts.incrementAndGet(bucket(v));
+        count.increment();
+        sum.add(v);
+        if (v > max.get())
+            max.accumulateAndGet(v, Math::max);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * @return the mean of the recorded values, or 0 if there are none
+     */
+    public double mean() {
+        final long n = count();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * @param p
+     *            from 0 to 100
+     * @return an upper bound, within the bucket width, on the value below
+     *         which p percent of the recorded values fall; 0 if there are
+     *         none
+     */
+    public long percentile(final double p) {
+        final long n = count();
+        if (n == 0)
+            return 0;
+        final long rank = Math.max(1, (long) Math.ceil(p / 100 * n));
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += counts.get(b);
+            if (seen >= rank)
+                return Math.min(max(), b + 1 < BUCKETS ? lowest(b + 1) - 1
+                        : Long.MAX_VALUE);
+        }
+        return max();
+    }
+
+    /**
+     * Forgets every recorded value. Values recorded while this runs may or
+     * may not be kept.
+     */
+    public void reset() {
+        for (int b = 0; b < BUCKETS; b++)
+            counts.set(b, 0);
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    /**
+     * @return count, mean and percentiles, reading the values as
+     *         nanoseconds and printing microseconds
+     */
+    @Override
+    public String toString() {
+        final double us = TimeUnit.MICROSECONDS.toNanos(1);
+        return String.format(
+                "count=%d mean=%.1fus p50=%.1fus p90=%.1fus p99=%.1fus"
+                        + " max=%.1fus",
+                count(), mean() / us, percentile(50) / us,
+                percentile(90) / us, percentile(99) / us, max() / us);
+    }
+}
@@ -0,0 +1,94 @@
+package com.ooba.nlp.util;
+
+/**
+ * Recognizes tokens that are numeric literals, in one pass over the chars
+ * and without allocating or throwing. Rule 2 uses it to decide that a noun
+ * is really a number (CD).
+ * <p/>
+ * Accepted, in order:
+ * <ul>
+ * <li>an optional sign and an optional currency symbol, in either order
+ * ("-$5", "$-5", "&euro;20");</li>
+ * <li>digits, either plain ("1234567") or grouped in threes with ','
+ * ("1,234,567"), and/or a '.' followed by digits ("3.14", ".5");</li>
+ * <li>an optional exponent ("6.02e23", "1E-9");</li>
+ * <li>an optional trailing '%' ("45%", "2.5%").</li>
+ * </ul>
+ * Unlike {@link Float#parseFloat(String)}, "NaN", "Infinity", hex floats
+ * and the Java 'f' / 'd' suffixes are not numbers here.
+ */
+public final class Numerals {
+    private Numerals() {}
+
+    private static boolean isDigit(final char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isSign(final char c) {
+        return c == '+' || c == '-';
+    }
+
+    private static boolean isCurrency(final char c) {
+        return Character.getType(c) == Character.CURRENCY_SYMBOL;
+    }
+
+    /**
+     * @return true if s is a numeric literal as described above
+     */
+    public static boolean isNumber(final CharSequence s) {
+        final int n = s.length();
+        int i = 0;
+        // prefix: [sign] [currency] or currency sign
+        boolean signed = false;
+        if (i < n && isSign(s.charAt(i))) {
+            signed = true;
+            i++;
+        }
+        if (i < n && isCurrency(s.charAt(i))) {
+            i++;
+            if (!signed && i < n && isSign(s.charAt(i)))
+                i++;
+        }
+
+        // integer part, plain or grouped in threes
+        final int intStart = i;
+        while (i < n && isDigit(s.charAt(i)))
+            i++;
+        int digits = i - intStart;
+        if (digits >= 1 && digits <= 3 && i < n && s.charAt(i) == ',')
+            while (i + 3 < n && s.charAt(i) == ','
+                    && isDigit(s.charAt(i + 1)) && isDigit(s.charAt(i + 2))
+                    && isDigit(s.charAt(i + 3))
+                    && (i + 4 == n || !isDigit(s.charAt(i + 4)))) {
+                i += 4;
+                digits += 3;
+            }
+
+        // fraction
+        if (i < n && s.charAt(i) == '.') {
+            i++;
+            final int fracStart = i;
+            while (i < n && isDigit(s.charAt(i)))
+                i++;
+            digits += i - fracStart;
+        }
+        if (digits == 0)
+            return false;
+
+        // exponent
+        if (i < n && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+            i++;
+            if (i < n && isSign(s.charAt(i)))
+                i++;
+            final int expStart = i;
+            while (i < n && isDigit(s.charAt(i)))
+                i++;
+            if (i == expStart)
+                return false;
+        }
+
+        if (i < n && s.charAt(i) == '%')
+            i++;
+        return i == n;
+    }
+}
@@ -1,11 +1,22 @@
 package com.ooba.nlp.util;
 
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 
-import com.ooba.nlp.fasttag.FastTag;
+import com.ooba.nlp.fasttag.Tagger;
 
+/**
+ * The tags the lexicons use: the Penn Treebank set and the MedPost tags
+ * beyond it. {@link #forTag(CharSequence)} maps a tag string to its
+ * constant through a precomputed table, and the class sets ({@link #NOUNS},
+ * {@link #VERBS}, {@link #ADJECTIVES}, {@link #PUNCTUATION}) and
+ * {@link #taggedAs(Set)} classify word/TAG strings without substrings or
+ * exceptions. Constants are in {@link TagIds} id order.
+ */
 public enum POS {
     CC("CC"), CD("CD"), DT("DT"), EX("EX"), FW("FW"), IN("IN"), JJ("JJ"),
     JJR("JJR"), JJS("JJS"), LS("LS"), MD("MD"), NN("NN"), NNP("NNP"),
@@ -14,14 +25,118 @@ public enum POS {
     RP("RP"), SYM("SYM"), TO("TO"), UH("UH"), VB("VB"), VBD("VBD"), VBG("VBG"),
     VBN("VBN"), VBP("VBP"), VBZ("VBZ"), WDT("WDT"), WP("WP"), WP$("WP$"),
     WRB("WRB"), DOLLAR_SIGN("$"), HASH_SIGN("#"), QUOTE("\""), OPEN_PAREN("("),
-    CLOSE_PAREN(")"), COMMA(","), PERIOD("."), COLON(":"), UNKNOWN("^");
+    CLOSE_PAREN(")"), COMMA(","), PERIOD("."), COLON(":"), UNKNOWN("^"),
+    OPEN_QUOTE("``"), CLOSE_QUOTE("''"),
+    // MedPost tags not shared with the Penn tagset above
+    CS("CS"), CSN("CSN"), CST("CST"), DB("DB"), DD("DD"), GE("GE"), II("II"),
+    JJT("JJT"), MC("MC"), PN("PN"), PND("PND"), PNG("PNG"), PNR("PNR"),
+    RR("RR"), RRR("RRR"), RRT("RRT"), VM("VM"), VBB("VBB"), VBI("VBI"),
+    VDB("VDB"), VDD("VDD"), VDG("VDG"), VDI("VDI"), VDN("VDN"), VDZ("VDZ"),
+    VHB("VHB"), VHD("VHD"), VHG("VHG"), VHI("VHI"), VHN("VHN"), VHZ("VHZ"),
+    VVB("VVB"), VVD("VVD"), VVG("VVG"), VVI("VVI"), VVN("VVN"), VVZ("VVZ"),
+    VVNJ("VVNJ"), VVGJ("VVGJ"), VVGN("VVGN"),
+    // punctuation lexicon.txt tags as itself
+    EXCLAMATION("!"), SEMICOLON(";");
 
-    private static String delim = "/";
+    // Brill's lexicon lists "best" as JJSS once
+    private static final String[][] ALIASES = { { "JJSS", "JJS" } };
 
-    private String str;
+    // tag -> POS, open addressing on the tag packed into a long
+    private static final int    TABLE_BITS = 8;
+    private static final long[] KEYS       = new long[1 << TABLE_BITS];
+    private static final POS[]  POS_BY_KEY = new POS[1 << TABLE_BITS];
+
+    public static final Set<POS> NOUNS       = withFlags(TagIds.NOUN);
+    public static final Set<POS> VERBS       = withFlags(TagIds.VERB);
+    public static final Set<POS> ADJECTIVES  = withFlags(TagIds.ADJECTIVE);
+    public static final Set<POS> PUNCTUATION = withFlags(TagIds.PUNCTUATION);
+
+    static {
+        for (final POS pos : values())
+            put(pos.str, pos);
+        for (final String[] alias : ALIASES)
+            put(alias[0], forTag(alias[1]));
+    }
+
+    private final String str;
+    private final int    flags;
 
     POS(final String str) {
         this.str = str;
+        flags = flagsOf(str);
+    }
+
+    /**
+     * The {@link TagIds} category flags of a tag string; any tag, not just
+     * the ones in this enum, has them.
+     */
+    static int flagsOf(final String tag) {
+        int f = 0;
+        if (tag.startsWith("N"))
+            f |= TagIds.NOUN;
+        if (tag.startsWith("NN"))
+            f |= TagIds.NOUN_NN;
+        if (tag.startsWith("V"))
+            f |= TagIds.VERB;
+        if (tag.startsWith("J"))
+            f |= TagIds.ADJECTIVE;
+        switch (tag) {
+            case ".":
+            case ",":
+            case ":":
+            case ";":
+            case "!":
+            case "(":
+            case ")":
+            case "\"":
+            case "``":
+            case "''":
+                f |= TagIds.PUNCTUATION;
+                break;
+            default:
+        }
+        return f;
+    }
+
+    private static Set<POS> withFlags(final int mask) {
+        final EnumSet<POS> set = EnumSet.noneOf(POS.class);
+        for (final POS pos : values())
+            if ((pos.flags & mask) != 0)
+                set.add(pos);
+        return Collections.unmodifiableSet(set);
+    }
+
+    /**
+     * @return s[from, to) as up to 7 ASCII chars and the length, or 0 if it
+     *         is longer or not ASCII, so no tag can have it
+     */
+    private static long key(final CharSequence s, final int from,
+            final int to) {
+        final int n = to - from;
+        if (n <= 0 || n > 7)
+            return 0;
+        long key = n;
+        for (int i = from; i < to; i++) {
+            final char c = s.charAt(i);
+            if (c >= 128)
+                return 0;
+            key = key << 8 | c;
+        }
+        return key;
+    }
+
+    private static int slot(final long key) {
+        return (int) ((key ^ key >>> 29) * 0x9E3779B97F4A7C15L
+                >>> 64 - TABLE_BITS);
+    }
+
+    private static void put(final String tag, final POS pos) {
+        final long key = key(tag, 0, tag.length());
+        int i = slot(key);
+        while (KEYS[i] != 0 && KEYS[i] != key)
+            i = i + 1 & KEYS.length - 1;
+        KEYS[i] = key;
+        POS_BY_KEY[i] = pos;
     }
 
     @Override
@@ -29,37 +144,136 @@ public enum POS {
         return str;
     }
 
+    /**
+     * @return this tag's id, as used by {@link TagIds}
+     */
+    public short id() {
+        return (short) ordinal();
+    }
+
+    /**
+     * @return this tag's {@link TagIds} category flags
+     */
+    public int flags() {
+        return flags;
+    }
+
+    /**
+     * @return true if this tag has any of the {@link TagIds} flags in mask
+     */
+    public boolean is(final int mask) {
+        return (flags & mask) != 0;
+    }
+
     public boolean isNoun() {
-        return str.startsWith("N");
+        return is(TagIds.NOUN);
+    }
+
+    /**
+     * @return false for a null word or one whose tag is not a POS
+     */
+    public static boolean isNoun(final CharSequence taggedWord) {
+        return taggedAs(NOUNS).test(taggedWord);
     }
 
     public static boolean isNoun(final String taggedWord) {
-        return fromTaggedWord(taggedWord).isNoun();
+        return isNoun((CharSequence) taggedWord);
     }
 
     public boolean isVerb() {
-        return str.startsWith("V");
+        return is(TagIds.VERB);
+    }
+
+    /**
+     * @return false for a null word or one whose tag is not a POS
+     */
+    public static boolean isVerb(final CharSequence taggedWord) {
+        return taggedAs(VERBS).test(taggedWord);
     }
 
     public static boolean isVerb(final String taggedWord) {
-        return fromTaggedWord(taggedWord).isVerb();
+        return isVerb((CharSequence) taggedWord);
+    }
+
+    public boolean isAdjective() {
+        return is(TagIds.ADJECTIVE);
+    }
+
+    public boolean isPunctuation() {
+        return is(TagIds.PUNCTUATION);
+    }
+
+    /**
+     * Looks tag up in a precomputed table, without allocating or throwing.
+     * Unlike {@link #valueOf(String)} it takes the tag as written, so "."
+     * gives {@link #PERIOD}.
+     *
+     * @return the POS for tag, or null if tag is not one
+     */
+    public static POS forTag(final CharSequence tag) {
+        return forTag(tag, 0, tag.length());
+    }
+
+    /**
+     * @return the POS for the tag s[from, to), or null if it is not one
+     */
+    public static POS forTag(final CharSequence s, final int from,
+            final int to) {
+        final long key = key(s, from, to);
+        if (key == 0)
+            return null;
+        for (int i = slot(key); KEYS[i] != 0; i = i + 1 & KEYS.length - 1)
+            if (KEYS[i] == key)
+                return POS_BY_KEY[i];
+        return null;
+    }
+
+    /**
+     * @param taggedWord
+     *            word/TAG, as {@link #tagText(String)} returns them
+     * @return the POS of the tag after the last '/', or of the whole string
+     *         if it has no '/'; null if that is not a POS
+     */
+    public static POS fromTaggedWord(final CharSequence taggedWord) {
+        int i = taggedWord.length() - 1;
+        while (i >= 0 && taggedWord.charAt(i) != '/')
+            i--;
+        return forTag(taggedWord, i + 1, taggedWord.length());
     }
 
     public static POS fromTaggedWord(final String taggedWord) {
-        return valueOf(taggedWord.substring(taggedWord.lastIndexOf(delim) + 1));
+        return fromTaggedWord((CharSequence) taggedWord);
+    }
+
+    /**
+     * @param classes
+     *            for example {@link #NOUNS}, or an EnumSet of some tags
+     * @return a test for word/TAG strings whose tag is in classes; it
+     *         allocates nothing and is false for anything else
+     */
+    public static Predicate<CharSequence> taggedAs(final Set<POS> classes) {
+        return taggedWord -> {
+            if (taggedWord == null)
+                return false;
+            final POS pos = fromTaggedWord(taggedWord);
+            return pos != null && classes.contains(pos);
+        };
+    }
+
+    /**
+     * Keeps the word/TAG strings whose tag is in classes, for example
+     * {@code POS.filter(tagger.tagStream(reader), POS.NOUNS)}.
+     */
+    public static <T extends CharSequence> Stream<T> filter(
+            final Stream<T> taggedWords, final Set<POS> classes) {
+        return taggedWords.filter(taggedAs(classes));
     }
 
     public static List<String> tagText(final String text) {
-        final Map<String, String[]> lexicon = FastTag.buildLexicon(
-                "lexicon.txt");
-        return FastTag.tag(lexicon, Tokenizer.wordsToList(text));
+        return Tagger.getDefault().tagText(text);
     }
 
     public static Stream<String> tagStream(final String text) {
-        final Map<String, String[]> lexicon = FastTag.buildLexicon(
-                "lexicon.txt");
-        return Tokenizer.wordsToStream(text)
-                        .sequential()
-                        .map(FastTag.tag(lexicon));
+        return Tagger.getDefault().tagStream(text);
     }
 }
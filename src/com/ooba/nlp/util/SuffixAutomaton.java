@@ -0,0 +1,195 @@
+package com.ooba.nlp.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Matches a word against a fixed set of suffixes in one pass: the suffixes
+ * are stored reversed in a trie, which is walked from the last char of the
+ * word towards the first until it runs out of branches. Every suffix the
+ * word ends with lies on that path, so
+ * <ul>
+ * <li>{@link #matches(CharSequence, int[])} collects all of them, and</li>
+ * <li>{@link #walk(CharSequence)} returns just the node the walk stopped at,
+ * after which {@link #endsWith(int, int)} answers for any one suffix in
+ * constant time.</li>
+ * </ul>
+ * Nodes are numbered in pre-order, so the nodes below a node v are exactly
+ * v + 1 up to end[v], and "suffix s lies on the path to v" is a range check.
+ * Instances are immutable.
+ */
+public final class SuffixAutomaton {
+    private static final int[] NONE = new int[0];
+
+    // per node: the char on the edge into it, the end of its subtree and
+    // the suffix it completes, or -1
+    private final char[] label;
+    private final int[]  end;
+    private final int[]  accept;
+    // per suffix: its node
+    private final int[]  node;
+    // children of the root for ASCII chars, or 0 for none
+    private final int[]  asciiRoot = new int[128];
+
+    private SuffixAutomaton(final char[] label, final int[] end,
+            final int[] accept, final int[] node) {
+        this.label = label;
+        this.end = end;
+        this.accept = accept;
+        this.node = node;
+        for (int u = 1; u < end[0]; u = end[u])
+            if (label[u] < 128)
+                asciiRoot[label[u]] = u;
+    }
+
+    /**
+     * @param suffixes
+     *            distinct, non-empty suffixes; suffix s in the rest of this
+     *            class is suffixes[s]
+     */
+    public static SuffixAutomaton of(final String... suffixes) {
+        final int n = suffixes.length;
+        final String[] reversed = new String[n];
+        final Integer[] order = new Integer[n];
+        for (int s = 0; s < n; s++) {
+            if (suffixes[s].isEmpty())
+                throw new IllegalArgumentException("empty suffix");
+            reversed[s] = new StringBuilder(suffixes[s]).reverse().toString();
+            order[s] = s;
+        }
+        Arrays.sort(order, (a, b) -> reversed[a].compareTo(reversed[b]));
+
+        // a node per distinct prefix of the reversed suffixes; taking them
+        // in sorted order numbers the nodes in pre-order
+        int nodes = 1;
+        for (int k = 0; k < n; k++) {
+            final String r = reversed[order[k]];
+            final int common = k == 0 ? 0
+                    : commonPrefix(reversed[order[k - 1]], r);
+            if (common == r.length())
+                throw new IllegalArgumentException(
+                        "duplicate suffix: " + suffixes[order[k]]);
+            nodes += r.length() - common;
+        }
+        final char[] label = new char[nodes];
+        final int[] end = new int[nodes];
+        final int[] accept = new int[nodes];
+        Arrays.fill(accept, -1);
+        final int[] node = new int[n];
+        // path[d] is the node at depth d on the current path
+        final int[] path = new int[maxLength(reversed) + 1];
+        int depth = 0, next = 1;
+        for (int k = 0; k < n; k++) {
+            final String r = reversed[order[k]];
+            final int common = k == 0 ? 0
+                    : commonPrefix(reversed[order[k - 1]], r);
+            for (; depth > common; depth--)
+                end[path[depth]] = next;
+            for (; depth < r.length(); depth++) {
+                label[next] = r.charAt(depth);
+                path[depth + 1] = next++;
+            }
+            accept[path[depth]] = order[k];
+            node[order[k]] = path[depth];
+        }
+        for (; depth >= 0; depth--)
+            end[path[depth]] = next;
+        return new SuffixAutomaton(label, end, accept, node);
+    }
+
+    public static SuffixAutomaton of(final Collection<String> suffixes) {
+        return of(suffixes.toArray(new String[0]));
+    }
+
+    private static int commonPrefix(final String a, final String b) {
+        int i = 0;
+        for (final int n = Math.min(a.length(), b.length()); i < n
+                && a.charAt(i) == b.charAt(i); i++)
+            ;
+        return i;
+    }
+
+    private static int maxLength(final String[] strings) {
+        int max = 0;
+        for (final String s : strings)
+            max = Math.max(max, s.length());
+        return max;
+    }
+
+    /**
+     * @return the number of suffixes
+     */
+    public int size() {
+        return node.length;
+    }
+
+    private int child(final int v, final char c) {
+        if (v == 0 && c < 128)
+            return asciiRoot[c];
+        // children are sorted by label
+        for (int u = v + 1; u < end[v]; u = end[u]) {
+            if (label[u] == c)
+                return u;
+            if (label[u] > c)
+                break;
+        }
+        return 0;
+    }
+
+    /**
+     * Walks word from its last char for as long as the trie allows.
+     *
+     * @return the node the walk stopped at, for {@link #endsWith(int, int)}
+     */
+    public int walk(final CharSequence word) {
+        int v = 0;
+        for (int i = word.length() - 1; i >= 0; i--) {
+            final int u = child(v, word.charAt(i));
+            if (u == 0)
+                break;
+            v = u;
+        }
+        return v;
+    }
+
+    /**
+     * @param state
+     *            what {@link #walk(CharSequence)} returned for a word
+     * @return true if that word ends with suffix s
+     */
+    public boolean endsWith(final int state, final int s) {
+        final int v = node[s];
+        return state >= v && state < end[v];
+    }
+
+    /**
+     * Writes the indexes of all the suffixes word ends with to out, shortest
+     * first.
+     *
+     * @param out
+     *            room for every suffix that can match at once; size() is
+     *            always enough
+     * @return how many were written
+     */
+    public int matches(final CharSequence word, final int[] out) {
+        int count = 0;
+        int v = 0;
+        for (int i = word.length() - 1; i >= 0; i--) {
+            v = child(v, word.charAt(i));
+            if (v == 0)
+                break;
+            if (accept[v] >= 0)
+                out[count++] = accept[v];
+        }
+        return count;
+    }
+
+    /**
+     * @return the indexes of all the suffixes word ends with, shortest first
+     */
+    public int[] matches(final CharSequence word) {
+        final int[] out = new int[node.length];
+        final int count = matches(word, out);
+        return count == 0 ? NONE : Arrays.copyOf(out, count);
+    }
+}
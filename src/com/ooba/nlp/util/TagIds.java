@@ -0,0 +1,115 @@
+package com.ooba.nlp.util;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide mapping between tag strings and small integer ids.
+ * <p/>
+ * Ids below POS.values().length are POS ordinals. Any other tag string a
+ * lexicon contains ("NN|JJ", or the odd entries in the medical lexicon) is
+ * given the next free id the first time it is seen, so tagging through ids
+ * never loses a tag. Each id also carries a set of category flags, computed
+ * once from its name, that the rules test instead of comparing strings.
+ */
+public final class TagIds {
+    /** Tags starting with "N". */
+    public static final int NOUN        = 1;
+    /** Tags starting with "NN": NN, NNS, NNP, NNPS. */
+    public static final int NOUN_NN     = 1 << 1;
+    /** Tags starting with "V". */
+    public static final int VERB        = 1 << 2;
+    /** Tags starting with "J". */
+    public static final int ADJECTIVE   = 1 << 3;
+    /** Punctuation: . , : ; ! ( ) " `` '' */
+    public static final int PUNCTUATION = 1 << 4;
+
+    private static final Map<String, Short> ids = new ConcurrentHashMap<>();
+    private static volatile String[]        names = new String[0];
+    private static volatile int[]           flags = new int[0];
+    private static volatile POS[]           poses = new POS[0];
+
+    static {
+        for (final POS pos : POS.values())
+            register(pos.toString());
+    }
+
+    private TagIds() {}
+
+    private static synchronized short register(final String tag) {
+        final Short existing = ids.get(tag);
+        if (existing != null)
+            return existing;
+        final int id = names.length;
+        if (id > Short.MAX_VALUE)
+            throw new IllegalStateException("Too many distinct tags");
+        final String[] ns = Arrays.copyOf(names, id + 1);
+        final int[] fs = Arrays.copyOf(flags, id + 1);
+        final POS[] ps = Arrays.copyOf(poses, id + 1);
+        ns[id] = tag;
+        fs[id] = POS.flagsOf(tag);
+        ps[id] = POS.forTag(tag);
+        flags = fs;
+        poses = ps;
+        names = ns;
+        ids.put(tag, (short) id);
+        return (short) id;
+    }
+
+    /**
+     * @return the id for tag, assigning a new one if it has not been seen
+     */
+    public static short id(final String tag) {
+        final Short id = ids.get(tag);
+        return id != null ? id : register(tag);
+    }
+
+    /**
+     * @return the ids for tags, in the same order
+     */
+    public static short[] ids(final String[] tags) {
+        final short[] res = new short[tags.length];
+        for (int i = 0; i < tags.length; i++)
+            res[i] = id(tags[i]);
+        return res;
+    }
+
+    /**
+     * @return the number of ids assigned so far; every id is below it
+     */
+    public static int count() {
+        return names.length;
+    }
+
+    public static String name(final int id) {
+        return names[id];
+    }
+
+    public static String[] names(final short[] tags) {
+        final String[] ns = names;
+        final String[] res = new String[tags.length];
+        for (int i = 0; i < tags.length; i++)
+            res[i] = ns[tags[i]];
+        return res;
+    }
+
+    public static int flags(final int id) {
+        return flags[id];
+    }
+
+    /**
+     * @return true if id has any of the flags in mask
+     */
+    public static boolean is(final int id, final int mask) {
+        return (flags[id] & mask) != 0;
+    }
+
+    /**
+     * @return the POS for id, or null if its tag is not one of the POS tags
+     *         (or an alias of one, see {@link POS#forTag(CharSequence)})
+     */
+    public static POS pos(final int id) {
+        return poses[id];
+    }
+}
@@ -0,0 +1,282 @@
+package com.ooba.nlp.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * The scanner behind {@link Tokenizer}. It walks a char[] (all of a String,
+ * or a refilled window over a Reader) and reports each token as start/end
+ * offsets, so callers only pay for a String when they ask for one.
+ * <p/>
+ * Token boundaries follow the java.io.StreamTokenizer setup this replaces:
+ * <ul>
+ * <li>words start with a letter and run over letters, digits, '.' and
+ * '-';</li>
+ * <li>numbers are [-]digits[.digits] and are kept verbatim ("3.14", not
+ * "3");</li>
+ * <li>'"', '\'', '/', control characters and anything past ASCII separate
+ * tokens;</li>
+ * <li>any other character is a token by itself;</li>
+ * <li>a trailing '.' is split off a word or number unless it contains an
+ * earlier '.' (so "dog." is "dog", "." but "N.J." stays whole).</li>
+ * </ul>
+ */
+public final class TokenScanner {
+    private static final byte SPACE = 0;
+    private static final byte ALPHA = 1;
+    private static final byte DIGIT = 2;
+    private static final byte ORD   = 3;
+
+    private static final byte[] TYPES = new byte[129];
+
+    static {
+        Arrays.fill(TYPES, ORD);
+        for (int c = 0; c <= ' '; c++)
+            TYPES[c] = SPACE;
+        TYPES['"'] = TYPES['\''] = TYPES['/'] = SPACE;
+        for (int c = 'a'; c <= 'z'; c++)
+            TYPES[c] = TYPES[c - 'a' + 'A'] = ALPHA;
+        for (int c = '0'; c <= '9'; c++)
+            TYPES[c] = DIGIT;
+        TYPES['.'] = TYPES['-'] = DIGIT;
+    }
+
+    // one-char tokens are mostly punctuation; hand out shared Strings
+    private static final String[] SINGLES = new String[128];
+
+    static {
+        for (char c = 0; c < SINGLES.length; c++)
+            SINGLES[c] = String.valueOf(c).intern();
+    }
+
+    private static byte type(final int c) {
+        return c < TYPES.length ? TYPES[c] : SPACE;
+    }
+
+    private static boolean isDigit(final int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private final Reader reader;
+    private char[]       buf;
+    // buf was handed in by the caller, so reset must not overwrite it
+    private boolean      borrowed;
+    private int          pos;
+    private int          limit;
+    // absolute offset of buf[0]
+    private long         base;
+    private boolean      eof;
+
+    private int     tokStart;
+    private int     tokEnd;
+    // set when the last token was split and its trailing '.' is still due
+    private boolean pendingPeriod;
+
+    public TokenScanner(final CharSequence text) {
+        this(text instanceof String ? ((String) text).toCharArray()
+                : text.toString().toCharArray());
+    }
+
+    public TokenScanner(final char[] text) {
+        reader = null;
+        buf = text;
+        borrowed = true;
+        limit = text.length;
+        eof = true;
+    }
+
+    /**
+     * A scanner with no input yet, for {@link #reset(CharSequence)}.
+     */
+    public TokenScanner() {
+        this(new char[0]);
+        borrowed = false;
+    }
+
+    /**
+     * Starts over on text, copying it into this scanner's own buffer, which
+     * is reused from one text to the next. Lets one scanner go through many
+     * short texts without allocating per text.
+     *
+     * @throws IllegalStateException
+     *             if this scanner reads from a Reader
+     */
+    public void reset(final CharSequence text) {
+        reset(text, 0, text.length());
+    }
+
+    /**
+     * Starts over on text[start, end) like {@link #reset(CharSequence)};
+     * offsets are still reported in text.
+     *
+     * @throws IllegalStateException
+     *             if this scanner reads from a Reader
+     */
+    public void reset(final CharSequence text, final int start,
+            final int end) {
+        if (reader != null)
+            throw new IllegalStateException("scanner reads from a Reader");
+        final int n = end - start;
+        if (borrowed || buf.length < n) {
+            buf = new char[borrowed ? n : Math.max(n, buf.length * 2)];
+            borrowed = false;
+        }
+        if (text instanceof String)
+            ((String) text).getChars(start, end, buf, 0);
+        else if (text instanceof StringBuilder)
+            ((StringBuilder) text).getChars(start, end, buf, 0);
+        else
+            for (int i = 0; i < n; i++)
+                buf[i] = text.charAt(start + i);
+        pos = tokStart = tokEnd = 0;
+        limit = n;
+        base = start;
+        pendingPeriod = false;
+    }
+
+    /**
+     * Scans text as it is read from reader, holding only a small window of
+     * it. The reader is not closed.
+     */
+    public TokenScanner(final Reader reader) {
+        this.reader = reader;
+        buf = new char[8192];
+    }
+
+    /**
+     * Reads more input, keeping buf[keep, limit) and moving it to the front.
+     *
+     * @return false at end of input
+     */
+    private boolean refill(final int keep) {
+        if (eof)
+            return false;
+        if (keep > 0) {
+            System.arraycopy(buf, keep, buf, 0, limit - keep);
+            limit -= keep;
+            pos -= keep;
+            tokStart -= keep;
+            base += keep;
+        } else if (limit == buf.length)
+            buf = Arrays.copyOf(buf, buf.length * 2);
+        try {
+            final int n = reader.read(buf, limit, buf.length - limit);
+            if (n < 0) {
+                eof = true;
+                return false;
+            }
+            limit += n;
+            return true;
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the char at pos (reading more input if needed, keeping the
+     *         current token), or -1 at end of input
+     */
+    private int peek() {
+        while (pos >= limit)
+            if (!refill(tokStart))
+                return -1;
+        return buf[pos];
+    }
+
+    /**
+     * Advances to the next token.
+     *
+     * @return false when the input is exhausted
+     */
+    public boolean next() {
+        if (pendingPeriod) {
+            pendingPeriod = false;
+            tokStart = tokEnd;
+            tokEnd = tokStart + 1;
+            return true;
+        }
+        tokStart = pos;
+        int c;
+        while ((c = peek()) >= 0 && type(c) == SPACE)
+            tokStart = ++pos;
+        if (c < 0)
+            return false;
+        switch (type(c)) {
+            case ALPHA:
+                pos++;
+                while ((c = peek()) >= 0 && type(c) != SPACE
+                        && type(c) != ORD)
+                    pos++;
+                break;
+            case DIGIT:
+                pos++;
+                if (c == '-' && ((c = peek()) < 0
+                        || (c != '.' && !isDigit(c))))
+                    break; // a lone '-'
+                boolean seenDot = buf[pos - 1] == '.';
+                while ((c = peek()) >= 0) {
+                    if (c == '.' && !seenDot)
+                        seenDot = true;
+                    else if (!isDigit(c))
+                        break;
+                    pos++;
+                }
+                break;
+            default:
+                pos++;
+        }
+        tokEnd = pos;
+        splitTrailingPeriod();
+        return true;
+    }
+
+    private void splitTrailingPeriod() {
+        if (tokEnd - tokStart < 2 || buf[tokEnd - 1] != '.')
+            return;
+        for (int i = tokStart; i < tokEnd - 1; i++)
+            if (buf[i] == '.')
+                return;
+        tokEnd--;
+        pendingPeriod = true;
+    }
+
+    /**
+     * @return offset of the current token's first char in the input
+     */
+    public long start() {
+        return base + tokStart;
+    }
+
+    /**
+     * @return offset just past the current token's last char in the input
+     */
+    public long end() {
+        return base + tokEnd;
+    }
+
+    public int length() {
+        return tokEnd - tokStart;
+    }
+
+    /**
+     * @return char i of the current token
+     */
+    public char charAt(final int i) {
+        return buf[tokStart + i];
+    }
+
+    /**
+     * @return the current token as a new String
+     */
+    public String token() {
+        if (tokEnd - tokStart == 1)
+            return single(buf[tokStart]);
+        return new String(buf, tokStart, tokEnd - tokStart);
+    }
+
+    private static String single(final char c) {
+        return c < SINGLES.length ? SINGLES[c] : String.valueOf(c);
+    }
+}
@@ -5,11 +5,19 @@
 
 package com.ooba.nlp.util;
 
-import java.io.StreamTokenizer;
-import java.io.StringReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  *
@@ -28,89 +36,62 @@ public final class Tokenizer {
     }
 
     public static Stream<String> wordsToStream(String str) {
-        String s2 = stripControlCharacters(str);
-        Stream.Builder<String> sb = Stream.builder();
-        String x;
-        try {
-            StreamTokenizer str_tok = new StreamTokenizer(new StringReader(s2));
-            str_tok.whitespaceChars('"', '"');
-            str_tok.whitespaceChars('\'', '\'');
-            str_tok.whitespaceChars('/', '/');
-            //str_tok.wordChars(':', ':');
-            while (str_tok.nextToken() != StreamTokenizer.TT_EOF) {
-                String s;
-                switch (str_tok.ttype) {
-                    case StreamTokenizer.TT_EOL:
-                        s = ""; // we will ignore this
-                        break;
-                    case StreamTokenizer.TT_WORD:
-                        s = str_tok.sval;
-                        break;
-                    case StreamTokenizer.TT_NUMBER:
-                        s = "" + (int) str_tok.nval; // .toString(); // we will ignore this
+        return wordsToStream(new TokenScanner(str));
+    }
+
+    /**
+     * Tokenizes text as it is read. Tokens are produced lazily, so only a
+     * small read buffer is held no matter how long the input is. The reader
+     * is not closed; I/O errors surface as UncheckedIOException.
+     * @param reader text to tokenize
+     * @return a lazy, ordered Stream of tokens
+     */
+    public static Stream<String> wordsToStream(Reader reader) {
+        return wordsToStream(new TokenScanner(reader));
+    }
+
+    public static Stream<String> wordsToStream(InputStream in, Charset cs) {
+        return wordsToStream(new InputStreamReader(in, cs));
+    }
 
-                        break;
-                    default :
-                        s = String.valueOf((char) str_tok.ttype);
-                }
-                if (s.length() < 1)
-                    continue;
-                //if (s.indexOf("-") > -1) continue;
-                //s = s.toLowerCase();
-                if (s.endsWith(".")) {
-                    // first check for abreviations like "N.J.":
-                    int index = s.indexOf(".");
-                    if (index < (s.length() - 1)) {
-                        sb.accept(s);
-                    } else {
-                        sb.accept(s.substring(0, s.length() - 1));
-                        sb.accept(".");
+    public static Stream<String> wordsToStream(ReadableByteChannel ch,
+            Charset cs) {
+        return wordsToStream(Channels.newReader(ch, cs.newDecoder(), -1));
+    }
+
+    /**
+     * Tokenizes text into views of it, so no token is copied.
+     * @param text text to tokenize
+     * @return a lazy, ordered Stream of tokens as {@link CharSpan}s of text
+     */
+    public static Stream<CharSpan> spansToStream(CharSequence text) {
+        final TokenScanner scanner = new TokenScanner(text);
+        return StreamSupport.stream(
+                new Spliterators.AbstractSpliterator<CharSpan>(Long.MAX_VALUE,
+                        Spliterator.ORDERED | Spliterator.NONNULL) {
+                    @Override
+                    public boolean tryAdvance(
+                            Consumer<? super CharSpan> action) {
+                        if (!scanner.next())
+                            return false;
+                        action.accept(CharSpan.of(text, (int) scanner.start(),
+                                (int) scanner.end()));
+                        return true;
                     }
-                } else if (s.endsWith(",")) {
-                    x = s.substring(0, s.length() - 1);
-                    if (x.length() > 0)
-                        sb.accept(x);
-                    sb.accept(",");
-                } else if (s.endsWith(";")) {
-                    x = s.substring(0, s.length() - 1);
-                    if (x.length() > 0)
-                        sb.accept(x);
-                    sb.accept(";");
-                } else if (s.endsWith("?")) {
-                    x = s.substring(0, s.length() - 1);
-                    if (x.length() > 0)
-                        sb.accept(x);
-                    sb.accept("?");
-                } else if (s.endsWith(":")) {
-                    x = s.substring(0, s.length() - 1);
-                    if (x.length() > 0)
-                        sb.accept(x);
-                    sb.accept(":");
-                } else {
-                    sb.accept(s);
-                }
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return sb.build();
+                }, false);
     }
 
-    static private String stripControlCharacters(String s) {
-        StringBuffer sb = new StringBuffer(s.length() + 1);
-        for (int i = 0; i < s.length(); i++) {
-            char ch = s.charAt(i);
-            if (ch > 256 || ch == '\n' || ch == '\t' || ch == '\r' || ch == 226) {
-                sb.append(' ');
-                continue;
-            }
-            //System.out.println(" ch: " + ch + " (int)ch: " + (int)ch + " Character.isISOControl(ch): " + Character.isISOControl(ch));
-            if ((int) ch < 129)
-                sb.append(ch);
-            else
-                sb.append(' ');
-        }
-        return sb.toString();
+    private static Stream<String> wordsToStream(TokenScanner scanner) {
+        return StreamSupport.stream(
+                new Spliterators.AbstractSpliterator<String>(Long.MAX_VALUE,
+                        Spliterator.ORDERED | Spliterator.NONNULL) {
+                    @Override
+                    public boolean tryAdvance(Consumer<? super String> action) {
+                        if (!scanner.next())
+                            return false;
+                        action.accept(scanner.token());
+                        return true;
+                    }
+                }, false);
     }
 }
-
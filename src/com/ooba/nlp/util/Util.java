@@ -15,7 +15,13 @@ public final class Util {
         return (pred.test(arg)) ? fun.apply(arg) : arg;
     }
     
+    /**
+     * @return true if Float.parseFloat accepts str. The tagger itself uses
+     *         {@link Numerals#isNumber(CharSequence)}, which never throws.
+     */
     public static boolean containsFloat(String str) {
+        if (!mayParseAsFloat(str))
+            return false;
         try {
             Float.parseFloat(str);
             return true;
@@ -24,6 +30,29 @@ public final class Util {
         }
     }
 
+    /**
+     * Cheap pre-check for containsFloat: Float.parseFloat only accepts
+     * strings whose first char after an optional sign is a digit, '.', or the
+     * start of "NaN" / "Infinity", so anything else can be rejected without
+     * paying for a NumberFormatException.
+     */
+    private static boolean mayParseAsFloat(String str) {
+        if (str == null)
+            return false;
+        // the bounds str.trim() would keep, without making the substring
+        int first = 0, last = str.length() - 1;
+        while (first <= last && str.charAt(first) <= ' ')
+            first++;
+        while (last > first && str.charAt(last) <= ' ')
+            last--;
+        if (first > last)
+            return false;
+        char c = str.charAt(first);
+        if ((c == '+' || c == '-') && first < last)
+            c = str.charAt(first + 1);
+        return (c >= '0' && c <= '9') || c == '.' || c == 'N' || c == 'I';
+    }
+
     /**
      * Shamelessly copied from Apache Commons: https://github.com/apache/commons-lang/blob/master/src/main/java/org/apache/commons/lang3/ArrayUtils.java
      */
@@ -0,0 +1,134 @@
+package fasttag;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.ooba.nlp.fasttag.BulkTagger;
+import com.ooba.nlp.fasttag.BulkTagger.Format;
+import com.ooba.nlp.fasttag.BulkTagger.Summary;
+import com.ooba.nlp.fasttag.RuleSet;
+import com.ooba.nlp.fasttag.Tagger;
+
+public class BulkTaggerTest {
+    static Tagger tagger;
+
+    String testText = "The ball rolled down the street. Would the ate dog\n"
+            + "them? They would! Dog walking is finally legal.\n";
+
+    @BeforeClass
+    public static void setUp() {
+        tagger = Tagger.fromText("lexicon.txt");
+    }
+
+    private static String tag(final BulkTagger bulk, final String text)
+            throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bulk.tag(Channels.newChannel(new ByteArrayInputStream(
+                text.getBytes(StandardCharsets.UTF_8))),
+                Channels.newChannel(out));
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testFormats() throws IOException {
+        final BulkTagger bulk = new BulkTagger(tagger).withWorkers(2);
+        final String tagged = tagger.tagSentences(new StringReader(testText))
+                                    .map(s -> s + "\n")
+                                    .collect(Collectors.joining());
+        Assert.assertEquals(tagged, tag(bulk, testText));
+
+        final String[] tsv = tag(bulk.withFormat(Format.TSV), testText)
+                .split("\n");
+        Assert.assertEquals(tagger.tagText(testText).size(), tsv.length);
+        Assert.assertEquals("The\tDT", tsv[0]);
+
+        final String conll = tag(bulk.withFormat(Format.CONLL), testText);
+        Assert.assertTrue(conll.startsWith("1\tThe\t_\t_\tDT\t_\t_\t_\t_\t_\n"
+                + "2\tball\t"));
+        Assert.assertEquals(4, conll.split("\n\n").length);
+    }
+
+    @Test
+    public void testOrderDoesNotDependOnWorkers() throws IOException {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200; i++)
+            text.append(i).append(' ').append(testText);
+        final BulkTagger bulk = new BulkTagger(tagger).withChunkSize(100);
+        final String one = tag(bulk.withWorkers(1), text.toString());
+        Assert.assertEquals(one, tag(bulk.withWorkers(4), text.toString()));
+        // chunks end after sentences, so nothing is lost or split
+        Assert.assertEquals(tagger.tagText(text.toString()).size(),
+                one.split("[ \n]").length);
+    }
+
+    @Test
+    public void testSameAsWholeText() throws IOException {
+        // rules that read the words and tags around a cut, one of which
+        // keeps chunks from ending after "."
+        final Tagger ahead = tagger.withRules(RuleSet.parse(String.join("\n",
+                "NN VB PREVWORD .", ". SENT NEXTWORD the",
+                "DT PDT PREVTAG SENT", "NN JJ NEXTWORD walking",
+                "VBD NN PREVTAG DT")));
+        final StringBuilder line = new StringBuilder();
+        for (int i = 0; i < 300; i++)
+            line.append(i % 7 == 0 ? "the dog walking. " : "")
+                .append(testText.replace('\n', ' '));
+        final StringBuilder tokens = new StringBuilder();
+        // no sentence ends: sentences are cut at the tagger's limit
+        for (int i = 0; i < 10000; i++)
+            tokens.append("dog ");
+        for (final Tagger t : new Tagger[] { tagger, ahead })
+            for (final String text : new String[] { line.toString(),
+                    line + "\n" + line, tokens.toString() }) {
+                final String whole = t.tagSentences(new StringReader(text))
+                                      .map(s -> s + "\n")
+                                      .collect(Collectors.joining());
+                for (final int chunk : new int[] { 50, 333, 4096 })
+                    Assert.assertEquals(whole, tag(new BulkTagger(t)
+                            .withChunkSize(chunk).withWorkers(3), text));
+            }
+    }
+
+    @Test
+    public void testFilesAndDirectories() throws IOException {
+        final Path dir = Files.createTempDirectory("bulk");
+        final File a = dir.resolve("a.txt").toFile();
+        final File b = dir.resolve("b.txt").toFile();
+        try {
+            Files.write(a.toPath(), "The ball rolled.\n".getBytes("UTF-8"));
+            Files.write(b.toPath(), "Dogs bark.\n".getBytes("UTF-8"));
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final Summary summary = new BulkTagger(tagger).tag(
+                    Collections.singletonList(dir), Channels.newChannel(out));
+            Assert.assertEquals(2, summary.inputs());
+            Assert.assertEquals(7, summary.tokens());
+            Assert.assertEquals(2, summary.sentences());
+            // each file on its own, in name order
+            Assert.assertEquals(Arrays.asList(
+                    tagger.tagSentences(new StringReader("The ball rolled."))
+                          .findFirst().get().toString(),
+                    tagger.tagSentences(new StringReader("Dogs bark."))
+                          .findFirst().get().toString()),
+                    Arrays.asList(new String(out.toByteArray(),
+                            StandardCharsets.UTF_8).split("\n")));
+        } finally {
+            a.delete();
+            b.delete();
+            dir.toFile().delete();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package fasttag;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.ooba.nlp.fasttag.CompiledLexicon;
+import com.ooba.nlp.fasttag.FastTag;
+import com.ooba.nlp.fasttag.LexiconCompiler;
+import com.ooba.nlp.fasttag.Tagger;
+
+public class CompiledLexiconTest {
+    static Map<String, String[]> lexicon;
+    static CompiledLexicon       compiled;
+    static File                  bin;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        lexicon = FastTag.buildLexicon("medical_plus_regular_lexicon.txt");
+        bin = File.createTempFile("lexicon", ".bin");
+        LexiconCompiler.compile("medical_plus_regular_lexicon.txt",
+                bin.getPath());
+        compiled = CompiledLexicon.open(bin.getPath());
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        bin.delete();
+    }
+
+    @Test
+    public void testSize() {
+        Assert.assertEquals(lexicon.size(), compiled.size());
+    }
+
+    @Test
+    public void testGet() {
+        lexicon.forEach((word, tags) -> Assert.assertArrayEquals(word, tags,
+                compiled.get(word)));
+    }
+
+    @Test
+    public void testMissing() {
+        Assert.assertNull(compiled.get("notawordinthelexicon"));
+        Assert.assertFalse(compiled.containsKey("notawordinthelexicon"));
+        Assert.assertNull(compiled.get(42));
+    }
+
+    @Test
+    public void testTagWithCompiled() {
+        final String[] words = { "The", "ball", "rolled", "down", "the",
+                "street", "." };
+        for (final String word : words)
+            Assert.assertEquals(FastTag.tag(lexicon, word),
+                    FastTag.tag(compiled, word));
+    }
+
+    @Test
+    public void testGuesses() {
+        final Map<String, String[]> text = FastTag.buildLexicon(
+                "lexicon.txt");
+        final Tagger fromText = Tagger.fromText("lexicon.txt");
+        final Tagger fromCompiled = Tagger.fromLexicon(
+                CompiledLexicon.of(text).ids());
+        final String sentence = "The Grimbleton blorfers skedaddled"
+                + " blorf-like and blorfously to Blorfington.";
+        // no guessing unless asked for, whatever the lexicon came from
+        final List<String> plain = fromText.tagText(sentence);
+        Assert.assertEquals(plain, fromCompiled.tagText(sentence));
+        Assert.assertEquals(plain,
+                Tagger.fromMap(text).tagText(sentence));
+        Assert.assertTrue(plain.contains("Grimbleton/NN"));
+
+        // the compiled guesses are the ones trained from the text
+        final List<String> guessed = fromText.withGuesses().tagText(
+                sentence);
+        Assert.assertEquals(guessed,
+                fromCompiled.withGuesses().tagText(sentence));
+        Assert.assertTrue(guessed.containsAll(Arrays.asList(
+                "Grimbleton/NNP", "blorf-like/JJ", "Blorfington/NNP")));
+        Assert.assertEquals(FastTag.tag(text, "ball"),
+                fromCompiled.withGuesses().tag("ball"));
+    }
+
+    @Test
+    public void testEntrySet() {
+        compiled.forEach((word, tags) -> Assert.assertArrayEquals(word,
+                lexicon.get(word), tags));
+    }
+
+    @Test
+    public void testOffHeap() throws Exception {
+        final CompiledLexicon offHeap = CompiledLexicon
+                .fromText("medical_plus_regular_lexicon.txt");
+        Assert.assertEquals(lexicon.size(), offHeap.size());
+        lexicon.forEach((word, tags) -> Assert.assertArrayEquals(word, tags,
+                offHeap.get(word)));
+        Assert.assertNull(offHeap.get("notawordinthelexicon"));
+        Assert.assertEquals(FastTag.tag(lexicon, "rolled"),
+                FastTag.tag(offHeap, "rolled"));
+    }
+
+    @Test
+    public void testSharedSequences() {
+        // words with the same tags get the same array, not a copy per lookup
+        Assert.assertSame(compiled.get("ball"), compiled.get("ball"));
+        Assert.assertSame(compiled.get("ball"), compiled.get("street"));
+        Assert.assertSame(compiled.ids().get("ball"),
+                compiled.ids().get("street"));
+    }
+
+    @Test
+    public void testRejectsOtherVersion() throws Exception {
+        final File old = File.createTempFile("lexicon", ".bin");
+        try {
+            final ByteBuffer header = ByteBuffer.allocate(64);
+            header.putInt(0, 0x46544C58).putInt(4, 1);
+            Files.write(old.toPath(), header.array());
+            CompiledLexicon.open(old.getPath());
+            Assert.fail("accepted version 1");
+        } catch (final IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("recompile"));
+        } finally {
+            old.delete();
+        }
+    }
+
+    @Test
+    public void testRead() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LexiconCompiler.write(lexicon, out);
+        final CompiledLexicon read = CompiledLexicon.read(
+                new ByteArrayInputStream(out.toByteArray()));
+        Assert.assertEquals(lexicon.size(), read.size());
+        lexicon.forEach((word, tags) -> Assert.assertArrayEquals(word, tags,
+                read.get(word)));
+        try {
+            CompiledLexicon.read(new ByteArrayInputStream(new byte[3]));
+            Assert.fail("accepted 3 bytes");
+        } catch (final IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
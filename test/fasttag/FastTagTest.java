@@ -0,0 +1,152 @@
+package fasttag;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.ooba.nlp.fasttag.FastTag;
+import com.ooba.nlp.fasttag.Lexicon;
+import com.ooba.nlp.util.POS;
+import com.ooba.nlp.util.TagIds;
+import com.ooba.nlp.util.Tokenizer;
+
+public class FastTagTest {
+    static Map<String, String[]> lexicon;
+
+    String testText = "The ball rolled down the street. It would dog them"
+            + " as the ate finally turned, and two cats sat walking.";
+
+    @BeforeClass
+    public static void setUp() {
+        lexicon = FastTag.buildLexicon("lexicon.txt");
+    }
+
+    @Test
+    public void testRule1PreviousTagIsDT() {
+        Assert.assertArrayEquals(new String[] { "DT", "NN" },
+                FastTag.tagSentence(lexicon, new String[] { "the", "ate" }));
+        Assert.assertArrayEquals(new String[] { "VBD" },
+                FastTag.tagSentence(lexicon, new String[] { "ate" }));
+    }
+
+    @Test
+    public void testRule6PreviousWordIsWould() {
+        Assert.assertArrayEquals(new String[] { "MD", "VB" },
+                FastTag.tagSentence(lexicon, new String[] { "Would", "dog" }));
+        Assert.assertArrayEquals(new String[] { "NN" },
+                FastTag.tagSentence(lexicon, new String[] { "dog" }));
+    }
+
+    @Test
+    public void testMatchesSingleWordTagging() {
+        for (final String word : Tokenizer.wordsToList(testText))
+            Assert.assertEquals(FastTag.tag(lexicon, word),
+                    FastTag.tag(lexicon, Arrays.asList(word)).get(0));
+    }
+
+    @Test
+    public void testTagIdsMatchTagSentence() {
+        final String[] words = Tokenizer.wordsToList(testText)
+                                        .toArray(new String[0]);
+        final short[] ids = FastTag.tagIds(FastTag.toIdLexicon(lexicon),
+                words);
+        Assert.assertArrayEquals(FastTag.tagSentence(lexicon, words),
+                TagIds.names(ids));
+        Assert.assertEquals(POS.NN, TagIds.pos(ids[1]));
+        Assert.assertTrue(TagIds.is(ids[1], TagIds.NOUN | TagIds.NOUN_NN));
+    }
+
+    @Test
+    public void testUnknownTagsKeepTheirNames() {
+        final short id = TagIds.id("NN|JJ");
+        Assert.assertNull(TagIds.pos(id));
+        Assert.assertEquals("NN|JJ", TagIds.name(id));
+        Assert.assertTrue(TagIds.is(id, TagIds.NOUN_NN));
+        Assert.assertEquals(id, TagIds.id("NN|JJ"));
+    }
+
+    @Test
+    public void testParallelMatchesSequential() {
+        final Map<String, String[]> lex = new HashMap<>();
+        lex.put("the", new String[] { "DT" });
+        lex.put("ate", new String[] { "VBD" });
+        lex.put("dog", new String[] { "NN" });
+        lex.put("would", new String[] { "MD" });
+        lex.put(".", new String[] { "." });
+        lex.put("?", new String[] { "DT" });
+        lex.put("!", new String[] { "VB" });
+        final Lexicon ids = FastTag.toIdLexicon(lex);
+        final String[] vocab = { "the", "ate", "dog", "would", ".", "?", "!",
+                "walking", "x" };
+        final Random random = new Random(42);
+        for (int run = 0; run < 200; run++) {
+            final String[] words = new String[random.nextInt(200)];
+            for (int i = 0; i < words.length; i++)
+                words[i] = vocab[random.nextInt(vocab.length)];
+            Assert.assertArrayEquals(
+                    TagIds.names(FastTag.tagIds(ids, words)),
+                    TagIds.names(FastTag.tagIdsParallel(ids, words,
+                            1 + random.nextInt(4))));
+        }
+    }
+
+    @Test
+    public void testMatchesOldTag() {
+        final List<String> words = Tokenizer.wordsToList(testText);
+        final String[] tags = FastTag.tagSentence(lexicon,
+                words.toArray(new String[words.size()]));
+        Assert.assertArrayEquals(FastTag._tag(lexicon, words).toArray(),
+                tags);
+    }
+
+    @Test
+    public void testMissingLexicon() {
+        try {
+            FastTag.buildLexicon("no-such-lexicon.txt");
+            Assert.fail("loaded a missing lexicon");
+        } catch (final UncheckedIOException e) {
+            // expected
+        }
+        Assert.assertEquals(lexicon.size(), FastTag.buildLexicon().size());
+    }
+
+    @Test
+    public void testBuildLexiconLikeGetTagsFromLine() throws IOException {
+        final String[] lines = { "dog NN VB", "cat  NNS", "hat NN ",
+                "no-tags", "", " JJ", "dog VBZ", "caf\u00e9 NN" };
+        final File file = File.createTempFile("lexicon", ".txt");
+        try {
+            Files.write(file.toPath(), (String.join("\r\n", lines) + "\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            final Map<String, String[]> parsed = FastTag.buildLexicon(
+                    file.getPath());
+            final Map<String, String[]> expected = new HashMap<>();
+            for (final String line : lines)
+                if (line.contains(" "))
+                    expected.put(FastTag.getTagsFromLine(line).left,
+                            FastTag.getTagsFromLine(line).right);
+            Assert.assertEquals(expected.keySet(), parsed.keySet());
+            expected.forEach((word, tags) -> Assert.assertArrayEquals(word,
+                    tags, parsed.get(word)));
+            // the last line for a word wins, and each word has its own tags
+            Assert.assertArrayEquals(new String[] { "VBZ" },
+                    parsed.get("dog"));
+            parsed.get("hat")[0] = "JJ";
+            Assert.assertArrayEquals(new String[] { "NN" },
+                    parsed.get("caf\u00e9"));
+        } finally {
+            file.delete();
+        }
+    }
+}
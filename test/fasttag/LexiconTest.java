@@ -0,0 +1,103 @@
+package fasttag;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.ooba.nlp.fasttag.CompiledLexicon;
+import com.ooba.nlp.fasttag.FastTag;
+import com.ooba.nlp.fasttag.Lexicon;
+import com.ooba.nlp.util.TagIds;
+
+public class LexiconTest {
+    static Map<String, String[]> words;
+    static Lexicon               lexicon;
+
+    @BeforeClass
+    public static void setUp() {
+        words = FastTag.buildLexicon("medical_plus_regular_lexicon.txt");
+        lexicon = FastTag.toIdLexicon(words);
+    }
+
+    @Test
+    public void testEveryWord() {
+        Assert.assertEquals(words.size(), lexicon.size());
+        words.forEach((word, tags) -> Assert.assertArrayEquals(word,
+                TagIds.ids(tags), lexicon.get(word)));
+    }
+
+    @Test
+    public void testForEach() {
+        final Map<String, short[]> seen = new HashMap<>();
+        lexicon.forEach(seen::put);
+        Assert.assertEquals(words.keySet(), seen.keySet());
+    }
+
+    @Test
+    public void testMissing() {
+        Assert.assertNull(lexicon.get("notawordinthelexicon"));
+        Assert.assertNull(lexicon.lookup("Notawordinthelexicon"));
+        Assert.assertFalse(lexicon.contains("Notawordinthelexicon"));
+        Assert.assertNull(Lexicon.of(new HashMap<>()).lookup("the"));
+    }
+
+    @Test
+    public void testLowerCaseFallback() {
+        Assert.assertNull(lexicon.get("THE"));
+        Assert.assertArrayEquals(lexicon.get("the"), lexicon.lookup("THE"));
+        Assert.assertArrayEquals(lexicon.get("the"),
+                lexicon.getLowerCase(new StringBuilder("tHe")));
+        Assert.assertNull(lexicon.getLowerCase("THEE?"));
+        for (final String word : words.keySet()) {
+            final String upper = word.toUpperCase();
+            final String[] tags = FastTag.getWordFromLexicon(words, upper);
+            Assert.assertArrayEquals(upper,
+                    tags == null ? null : TagIds.ids(tags),
+                    lexicon.lookup(upper));
+        }
+    }
+
+    @Test
+    public void testLayered() {
+        final Map<String, short[]> domain = new HashMap<>();
+        domain.put("stent", TagIds.ids(new String[] { "NN" }));
+        domain.put("the", TagIds.ids(new String[] { "XX" }));
+        final Map<String, short[]> customer = new HashMap<>();
+        customer.put("the", TagIds.ids(new String[] { "YY", "DT" }));
+        final Lexicon layered = Lexicon.layered(lexicon, Lexicon.of(domain),
+                Lexicon.of(customer));
+        Assert.assertEquals(words.containsKey("stent") ? words.size()
+                : words.size() + 1, layered.size());
+        Assert.assertArrayEquals(customer.get("the"), layered.lookup("The"));
+        Assert.assertArrayEquals(domain.get("stent"), layered.get("stent"));
+        Assert.assertArrayEquals(lexicon.get("dog"), layered.get("dog"));
+    }
+
+    @Test
+    public void testLayeredKeepsGuesses() {
+        final Lexicon base = CompiledLexicon.of(words).ids().withGuesses();
+        final Map<String, short[]> customer = new HashMap<>();
+        customer.put("blorfed", TagIds.ids(new String[] { "JJ" }));
+        final Lexicon layered = Lexicon.layered(base, Lexicon.of(customer));
+        for (final String word : new String[] { "Grimbleton", "blorfers",
+                "blorf-like", "blorfously", "x" })
+            Assert.assertEquals(word, base.guess(word), layered.guess(word));
+        Assert.assertNotEquals(lexicon.guess("blorf-like"),
+                layered.guess("blorf-like"));
+        Assert.assertArrayEquals(customer.get("blorfed"),
+                layered.get("blorfed"));
+        // a base that does not guess gives a layered lexicon that does not
+        Assert.assertEquals(lexicon.guess("Grimbleton"), Lexicon.layered(
+                lexicon, Lexicon.of(customer)).guess("Grimbleton"));
+    }
+
+    @Test
+    public void testWordInLexicon() {
+        Assert.assertTrue(FastTag.wordInLexicon(lexicon, "The"));
+        Assert.assertTrue(FastTag.wordInLexicon(words, "The"));
+        Assert.assertFalse(FastTag.wordInLexicon(lexicon, "Notaword"));
+    }
+}
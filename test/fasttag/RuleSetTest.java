@@ -0,0 +1,207 @@
+package fasttag;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.ooba.nlp.fasttag.FastTag;
+import com.ooba.nlp.fasttag.RuleSet;
+import com.ooba.nlp.fasttag.Tagger;
+import com.ooba.nlp.util.TagIds;
+
+public class RuleSetTest {
+    static Map<String, String[]> lexicon;
+    static Tagger                plain;
+
+    static final String[] VOCAB = { "the", "a", "dog", "dogs", "run", "ran",
+            "walking", "would", "to", "final", "quickly", "wow", "3.5", "12",
+            "zebra", ".", "?", "!", "x", "ed" };
+
+    @BeforeClass
+    public static void setUp() {
+        lexicon = new HashMap<>();
+        lexicon.put("the", new String[] { "DT" });
+        lexicon.put("a", new String[] { "DT" });
+        lexicon.put("dog", new String[] { "NN" });
+        lexicon.put("run", new String[] { "VB" });
+        lexicon.put("ran", new String[] { "VBD" });
+        lexicon.put("would", new String[] { "MD" });
+        lexicon.put("to", new String[] { "TO" });
+        lexicon.put(".", new String[] { "." });
+        lexicon.put("?", new String[] { "." });
+        lexicon.put("!", new String[] { "." });
+        plain = Tagger.fromMap(lexicon).withRules(RuleSet.parse(""));
+    }
+
+    private static String[] tags(final Tagger tagger, final String text) {
+        return tagger.tagSentence(text.split(" ")).toTaggedWords().stream()
+                     .map(w -> w.substring(w.lastIndexOf('/') + 1))
+                     .toArray(String[]::new);
+    }
+
+    @Test
+    public void testDefaultRules() {
+        Assert.assertEquals(10, RuleSet.getDefault().size());
+        Assert.assertSame(RuleSet.getDefault(),
+                Tagger.fromMap(lexicon).rules());
+        Assert.assertArrayEquals(new String[] { "DT", "NN", "MD", "VB" },
+                tags(Tagger.fromMap(lexicon), "the run would dog"));
+    }
+
+    @Test
+    public void testConditions() {
+        final Tagger tagger = plain.withRules(RuleSet.parse(String.join("\n",
+                "# comment", "",
+                "VB   NN   PREVTAG  DT   # the run",
+                "DT   PDT  NEXTTAG  DT",
+                "NN   VB   NEXTWORD TO",
+                "NN*  UH   PREFIX   wow",
+                "MD   VBZ  PREVWORD Dog",
+                "*    FW   SUFFIX   bra")));
+        Assert.assertArrayEquals(
+                new String[] { "PDT", "DT", "NN", "VB", "TO", "NN", "VBZ",
+                        "UH", "FW" },
+                tags(tagger, "a the run dog to dog would wowza zebra"));
+    }
+
+    @Test
+    public void testRulesApplyInOrder() {
+        final Tagger tagger = plain.withRules(RuleSet.parse(
+                "NN JJ SUFFIX g\nJJ RB SUFFIX og\nNN VB SUFFIX og"));
+        Assert.assertArrayEquals(new String[] { "RB" }, tags(tagger, "dog"));
+    }
+
+    @Test
+    public void testParseErrors() {
+        final String[] bad = { "NN VB", "NN VB* SUFFIX s",
+                "NN VB BOGUS x", "NN VB NUMBER x", "NN VB SUFFIX" };
+        for (final String rule : bad)
+            try {
+                RuleSet.parse("# ok\n" + rule);
+                Assert.fail(rule);
+            } catch (final IllegalArgumentException e) {
+                Assert.assertTrue(e.getMessage(),
+                        e.getMessage().startsWith("rules line 2:"));
+            }
+    }
+
+    private static String randomRule(final Random random) {
+        final String[] tags = { "NN", "NNS", "VB", "VBD", "DT", "JJ", "RB",
+                "CD", ".", "MD" };
+        final String[] patterns = { "N*", "NN*", "VB*", "*" };
+        final String[] affixes = { "s", "g", "ng", "ed", "d", "a", "w", "3",
+                "." };
+        final String from = random.nextInt(4) == 0
+                ? patterns[random.nextInt(patterns.length)]
+                : tags[random.nextInt(tags.length)];
+        final String to = tags[random.nextInt(tags.length)];
+        switch (random.nextInt(7)) {
+            case 0:
+                return from + " " + to + " PREVTAG "
+                        + tags[random.nextInt(tags.length)];
+            case 1:
+                return from + " " + to + " NEXTTAG "
+                        + patterns[random.nextInt(patterns.length)];
+            case 2:
+                return from + " " + to + " PREVWORD "
+                        + VOCAB[random.nextInt(VOCAB.length)];
+            case 3:
+                return from + " " + to + " NEXTWORD "
+                        + VOCAB[random.nextInt(VOCAB.length)].toUpperCase();
+            case 4:
+                return from + " " + to + " SUFFIX "
+                        + affixes[random.nextInt(affixes.length)];
+            case 5:
+                return from + " " + to + " PREFIX "
+                        + affixes[random.nextInt(affixes.length)];
+            default:
+                return from + " " + to + " NUMBER";
+        }
+    }
+
+    private static boolean matches(final String pattern, final int tag) {
+        if (tag < 0)
+            return false;
+        final String name = TagIds.name(tag);
+        return pattern.endsWith("*")
+                ? name.startsWith(pattern.substring(0, pattern.length() - 1))
+                : name.equals(pattern);
+    }
+
+    // applies every rule to every token in order, the slow obvious way
+    private static short[] naive(final List<String> rules,
+            final String[] words) {
+        final short[] initial = plain.tagSentence(words).tags;
+        final short[] tags = initial.clone();
+        for (int i = 0; i < words.length; i++)
+            for (final String rule : rules) {
+                final String[] r = rule.split(" ");
+                if (!matches(r[0], tags[i]))
+                    continue;
+                final String prev = i > 0 ? words[i - 1] : null;
+                final String next = i + 1 < words.length ? words[i + 1] : null;
+                final boolean holds;
+                switch (r[2]) {
+                    case "PREVTAG":
+                        holds = matches(r[3], i > 0 ? tags[i - 1] : -1);
+                        break;
+                    case "NEXTTAG":
+                        holds = matches(r[3],
+                                next != null ? initial[i + 1] : -1);
+                        break;
+                    case "PREVWORD":
+                        holds = r[3].equalsIgnoreCase(prev);
+                        break;
+                    case "NEXTWORD":
+                        holds = r[3].equalsIgnoreCase(next);
+                        break;
+                    case "SUFFIX":
+                        holds = words[i].endsWith(r[3]);
+                        break;
+                    case "PREFIX":
+                        holds = words[i].startsWith(r[3]);
+                        break;
+                    default:
+                        holds = words[i].contains(".")
+                                || words[i].matches("[0-9]+");
+                }
+                if (holds)
+                    tags[i] = TagIds.id(r[1]);
+            }
+        return tags;
+    }
+
+    @Test
+    public void testMatchesNaiveRuleByRule() {
+        final Random random = new Random(7);
+        for (int run = 0; run < 20; run++) {
+            final List<String> rules = new ArrayList<>();
+            for (int r = 0, n = 1 + random.nextInt(300); r < n; r++)
+                rules.add(randomRule(random));
+            final Tagger tagger = plain.withRules(
+                    RuleSet.parse(String.join("\n", rules)));
+            final String[] words = new String[random.nextInt(300)];
+            for (int i = 0; i < words.length; i++)
+                words[i] = VOCAB[random.nextInt(VOCAB.length)];
+            Assert.assertArrayEquals(naive(rules, words),
+                    tagger.tagSentence(words).tags);
+            Assert.assertArrayEquals(tagger.tagSentence(words).tags,
+                    FastTag.tagIdsParallel(tagger.lexicon(), tagger.rules(),
+                            null, words, 1 + random.nextInt(8)));
+            Assert.assertArrayEquals(tagger.tagSentence(words).tags,
+                    tagger.withTokenCache(64).tagSentence(words).tags);
+            final String text = String.join(" ", words);
+            Assert.assertEquals(tagger.tagText(text),
+                    tagger.tagStream(new StringReader(text))
+                          .collect(Collectors.toList()));
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package fasttag;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.ooba.nlp.fasttag.RuleSet;
+import com.ooba.nlp.fasttag.Tagger;
+import com.ooba.nlp.fasttag.TaggerMetrics;
+
+public class TaggerMetricsTest {
+    static Map<String, String[]> lexicon;
+    static Tagger                tagger;
+
+    @BeforeClass
+    public static void setUp() {
+        lexicon = new HashMap<>();
+        lexicon.put("the", new String[] { "DT" });
+        lexicon.put("run", new String[] { "VB" });
+        lexicon.put("dog", new String[] { "NN" });
+        lexicon.put(".", new String[] { "." });
+        tagger = Tagger.fromMap(lexicon).withRules(RuleSet.parse(
+                "VB NN PREVTAG DT\nNN NNS SUFFIX s\nNN VBG SUFFIX ing"));
+    }
+
+    private static void check(final TaggerMetrics metrics) {
+        // blorfs and walking miss the lexicon, ! gets "^"
+        Assert.assertEquals(8, metrics.getTokens());
+        Assert.assertEquals(3, metrics.getLexiconMisses());
+        Assert.assertEquals(1, metrics.getUnknownSingleChars());
+        Assert.assertEquals(0, metrics.getGuessedTags());
+        Assert.assertEquals(5 / 8.0, metrics.getLexiconHitRate(), 1e-9);
+        Assert.assertArrayEquals(new long[] { 1, 1, 1 },
+                metrics.getRuleFirings());
+    }
+
+    @Test
+    public void testCounts() {
+        final String[] words = "the run dog blorfs walking . the !"
+                .split(" ");
+        final Tagger measured = tagger.withMetrics();
+        Assert.assertNull(tagger.metrics());
+        Assert.assertEquals(Arrays.asList("the/DT", "run/NN", "dog/NN",
+                "blorfs/NNS", "walking/VBG", "./.", "the/DT", "!/^"),
+                measured.tagSentence(words).toTaggedWords());
+        check(measured.metrics());
+        Assert.assertEquals(1, measured.metrics().getTaggings());
+        Assert.assertArrayEquals(new String[] { "VB NN PREVTAG DT",
+                "NN NNS SUFFIX s", "NN VBG SUFFIX ing" },
+                measured.metrics().getRules());
+
+        // served from the cache the second time, counted the same
+        final Tagger cached = tagger.withTokenCache(100).withMetrics();
+        cached.tagSentence(words);
+        cached.metrics().reset();
+        cached.tagParallel(words);
+        check(cached.metrics());
+
+        final Tagger batched = tagger.withMetrics();
+        batched.tagBatch(Arrays.asList(String.join(" ", words)));
+        check(batched.metrics());
+    }
+
+    @Test
+    public void testGuessedTags() {
+        // trained on the, run and dog: every other word is guessed DT, but
+        // "^" is still given to single chars
+        final Tagger measured = Tagger.fromMap(lexicon).withGuesses()
+                .withMetrics();
+        Assert.assertEquals(Arrays.asList("the/DT", "blorfs/DT",
+                "walking/DT", "!/^"), measured.tagSentence(
+                        "the blorfs walking !".split(" ")).toTaggedWords());
+        Assert.assertEquals(3, measured.metrics().getLexiconMisses());
+        Assert.assertEquals(1, measured.metrics().getUnknownSingleChars());
+        Assert.assertEquals(2, measured.metrics().getGuessedTags());
+    }
+
+    @Test
+    public void testJmx() throws Exception {
+        final TaggerMetrics metrics = tagger.withMetrics().metrics();
+        final ObjectName name = metrics.register("test");
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            Assert.assertEquals(0L, server.getAttribute(name, "Tokens"));
+            Assert.assertEquals(3, ((String[]) server.getAttribute(name,
+                    "Rules")).length);
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+}
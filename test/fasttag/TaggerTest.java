@@ -0,0 +1,261 @@
+package fasttag;
+
+import java.io.StringReader;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.ooba.nlp.fasttag.Lexicon;
+import com.ooba.nlp.fasttag.ReloadableTagger;
+import com.ooba.nlp.fasttag.TaggedSentence;
+import com.ooba.nlp.fasttag.TaggedSpans;
+import com.ooba.nlp.fasttag.Tagger;
+import com.ooba.nlp.fasttag.TokenCache;
+import com.ooba.nlp.util.TagIds;
+import com.ooba.nlp.util.Tokenizer;
+
+public class TaggerTest {
+    static Tagger tagger;
+
+    String testText = "The ball rolled down the street. Would the ate dog"
+            + " them? They would! Dog walking is finally legal.";
+
+    @BeforeClass
+    public static void setUp() {
+        tagger = Tagger.fromText("lexicon.txt");
+    }
+
+    @Test
+    public void testTagSentences() {
+        final List<TaggedSentence> sentences = tagger.tagSentences(
+                new StringReader(testText)).collect(Collectors.toList());
+        Assert.assertEquals(4, sentences.size());
+        Assert.assertArrayEquals(tagger.tagText(testText).toArray(),
+                sentences.stream()
+                         .flatMap(s -> s.toTaggedWords().stream())
+                         .toArray());
+    }
+
+    @Test
+    public void testTagStreamCarriesContext() {
+        // "!" ends a sentence after "would", so rule 6 has to see across it
+        Assert.assertEquals(tagger.tagText(testText),
+                tagger.tagStream(new StringReader(testText))
+                      .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testTagParallel() {
+        final String[] words = Tokenizer.wordsToStream(testText)
+                                        .toArray(String[]::new);
+        Assert.assertArrayEquals(tagger.tagSentence(words).tags,
+                tagger.tagParallel(words).tags);
+    }
+
+    @Test
+    public void testTokenCacheMatchesUncached() {
+        final Tagger cached = tagger.withTokenCache(1000);
+        final String text = testText + " The 3.5 blorfs zapped 12 widgets"
+                + " globally; totals were 1e3 and 42.";
+        final String[] words = Tokenizer.wordsToStream(text)
+                                        .toArray(String[]::new);
+        for (int run = 0; run < 3; run++) {
+            Assert.assertArrayEquals(tagger.tagSentence(words).tags,
+                    cached.tagSentence(words).tags);
+            Assert.assertArrayEquals(tagger.tagParallel(words).tags,
+                    cached.tagParallel(words).tags);
+        }
+        Assert.assertEquals(tagger.tagText(text),
+                cached.tagStream(new StringReader(text))
+                      .collect(Collectors.toList()));
+        final TokenCache stats = cached.tokenCache();
+        Assert.assertTrue(stats.hits() > stats.misses());
+        Assert.assertEquals(0, stats.evictions());
+        Assert.assertNull(tagger.tokenCache());
+        Assert.assertNull(tagger.withTokenCache(0).tokenCache());
+    }
+
+    @Test
+    public void testTokenCacheIsBounded() {
+        final Tagger cached = tagger.withTokenCache(32);
+        final String[] words = new String[1000];
+        for (int i = 0; i < words.length; i++)
+            words[i] = "unknown" + i;
+        cached.tagSentence(words);
+        final TokenCache stats = cached.tokenCache();
+        Assert.assertTrue(stats.size() <= 32);
+        Assert.assertEquals(1000 - stats.size(), stats.evictions());
+        Assert.assertEquals(1000, stats.misses());
+    }
+
+    @Test
+    public void testTokenCacheCapacityUnderContention() throws Exception {
+        // 10 does not split evenly over the segments
+        final Tagger cached = tagger.withTokenCache(10);
+        final Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final String prefix = "unknown" + t + "-";
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 2000; i++)
+                    cached.tagSentence(new String[] { prefix + i });
+            });
+            threads[t].start();
+        }
+        for (final Thread thread : threads)
+            thread.join();
+        final TokenCache stats = cached.tokenCache();
+        Assert.assertEquals(10, stats.size());
+        Assert.assertEquals(8000, stats.misses());
+        Assert.assertEquals(8000 - 10, stats.evictions());
+        final Tagger one = tagger.withTokenCache(1);
+        one.tagSentence(new String[] { "blorf", "zorp", "quux" });
+        Assert.assertEquals(1, one.tokenCache().size());
+    }
+
+    @Test
+    public void testReloadableTagger() {
+        final ReloadableTagger reloadable = new ReloadableTagger(
+                tagger.withTokenCache(100));
+        final Map<String, short[]> overrides = new HashMap<>();
+        overrides.put("ball", TagIds.ids(new String[] { "XX" }));
+        final Iterator<String> inFlight = reloadable.tagStream(
+                new StringReader(testText)).iterator();
+        Assert.assertEquals("The/DT", inFlight.next());
+
+        final Tagger old = reloadable.swap(Lexicon.layered(tagger.lexicon(),
+                Lexicon.of(overrides)));
+        Assert.assertEquals("ball/NN", inFlight.next());
+        Assert.assertEquals("ball/NN", old.tag("ball"));
+        Assert.assertEquals("ball/XX", reloadable.tag("ball"));
+        Assert.assertNotSame(old.tokenCache(),
+                reloadable.current().tokenCache());
+        Assert.assertEquals(100, reloadable.current().tokenCache().capacity());
+        Assert.assertSame(old.rules(), reloadable.current().rules());
+    }
+
+    @Test
+    public void testTagSpans() {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 30; i++)
+            text.append(testText).append(" Walked ").append(i)
+                .append(" dogs, N.J. 3.5 miles.\n");
+        final TaggedSentence expected = tagger.tagSentence(
+                Tokenizer.wordsToStream(text.toString())
+                         .toArray(String[]::new));
+
+        final TaggedSpans spans = tagger.tagSpans(text);
+        Assert.assertEquals(expected.size(), spans.size());
+        Assert.assertArrayEquals(expected.tags, spans.tags);
+        Assert.assertEquals(expected.toString(), spans.toString());
+        for (int i = 0; i < spans.size(); i++)
+            Assert.assertTrue(spans.word(i).contentEquals(expected.word(i)));
+        Assert.assertArrayEquals(expected.words,
+                spans.toTaggedSentence().words);
+
+        final List<String> triples = new ArrayList<>();
+        Assert.assertEquals(expected.size(), tagger.tagSpans(text,
+                (start, end, tag) -> triples.add(
+                        text.substring(start, end) + "/" + TagIds.name(tag))));
+        Assert.assertEquals(expected.toTaggedWords(), triples);
+        Assert.assertEquals(0, tagger.tagSpans("").size());
+    }
+
+    @Test
+    public void testTagSpansReleasesTextOnFailure() throws Exception {
+        final Lexicon lexicon = tagger.lexicon();
+        final Tagger failing = tagger.withLexicon(new Lexicon() {
+            @Override
+            public short[] get(final CharSequence word) {
+                if (word.toString().equals("boom"))
+                    throw new IllegalStateException("boom");
+                return lexicon.get(word);
+            }
+
+            @Override
+            public short[] getLowerCase(final CharSequence word) {
+                return lexicon.getLowerCase(word);
+            }
+
+            @Override
+            public int size() {
+                return lexicon.size();
+            }
+
+            @Override
+            public void forEach(
+                    final BiConsumer<? super String, ? super short[]> action) {
+                lexicon.forEach(action);
+            }
+        });
+        StringBuilder text = new StringBuilder("The dog ate it. boom");
+        final WeakReference<StringBuilder> ref = new WeakReference<>(text);
+        try {
+            failing.tagSpans(text);
+            Assert.fail("tagged past a failing lexicon");
+        } catch (final IllegalStateException e) {
+            // expected
+        }
+        text = null;
+        for (int i = 0; i < 20 && ref.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        // the failed call's views no longer hold the text
+        Assert.assertNull(ref.get());
+    }
+
+    @Test
+    public void testTagBatch() {
+        final List<String> texts = new ArrayList<>(Arrays.asList(
+                "The ball rolled.", "", "Dog walking is finally legal",
+                "Would the ate dog them? They would!", "42"));
+        final StringBuilder longText = new StringBuilder();
+        for (int i = 0; i < 50; i++)
+            longText.append(testText).append(' ');
+        texts.add(longText.toString());
+        for (int i = 0; i < 200; i++)
+            texts.add("Walked " + i + " dogs quickly");
+
+        final List<String> expected = new ArrayList<>();
+        for (final String text : texts)
+            expected.add(tagger.tagSentence(Tokenizer.wordsToStream(text)
+                    .toArray(String[]::new)).toString());
+        final List<String> batch = new ArrayList<>();
+        tagger.tagBatch(texts).forEach(s -> batch.add(s.toString()));
+        Assert.assertEquals(expected, batch);
+        Assert.assertEquals(expected, tagger.tagBatch(texts.parallelStream())
+                .map(TaggedSentence::toString).collect(Collectors.toList()));
+        Assert.assertEquals(expected, tagger.withTokenCache(64)
+                .tagBatch(texts.stream().map(StringBuilder::new))
+                .map(TaggedSentence::toString).collect(Collectors.toList()));
+
+        final List<String> consumed = new ArrayList<>();
+        tagger.tagBatch(texts, (index, words, tags, length) -> {
+            Assert.assertEquals(consumed.size(), index);
+            // a nested batch must not clobber this one's buffers
+            tagger.tagBatch(Arrays.asList("Nested text here"),
+                    (i, w, t, n) -> Assert.assertEquals(3, n));
+            consumed.add(new TaggedSentence(Arrays.copyOf(words, length),
+                    Arrays.copyOf(tags, length)).toString());
+        });
+        Assert.assertEquals(expected, consumed);
+    }
+
+    @Test
+    public void testPreloadDefault() {
+        Assert.assertSame(Tagger.getDefault(), Tagger.preloadDefault().join());
+        Assert.assertSame(Tagger.preloadDefault(), Tagger.preloadDefault());
+        Assert.assertEquals(tagger.tagText(testText),
+                Tagger.getDefault().tagText(testText));
+    }
+}
@@ -0,0 +1,179 @@
+package fasttag;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.ooba.nlp.fasttag.TaggedSentence;
+import com.ooba.nlp.fasttag.Tagger;
+import com.ooba.nlp.fasttag.TaggingService;
+import com.ooba.nlp.util.Tokenizer;
+
+public class TaggingServiceTest {
+    static Tagger tagger;
+
+    @BeforeClass
+    public static void setUp() {
+        tagger = Tagger.fromText("lexicon.txt");
+    }
+
+    private static String expected(final String text) {
+        return tagger.tagSentence(
+                Tokenizer.wordsToStream(text).toArray(String[]::new))
+                     .toString();
+    }
+
+    @Test
+    public void testResultsMatchTagger() {
+        final List<String> texts = new ArrayList<>();
+        final List<CompletableFuture<TaggedSentence>> futures;
+        futures = new ArrayList<>();
+        try (TaggingService service = TaggingService.start(() -> tagger,
+                new TaggingService.Config().withWorkers(3).withMaxBatch(16)
+                                           .withQueueCapacity(64))) {
+            for (int i = 0; i < 2000; i++) {
+                texts.add("The " + i + " dogs walked quickly home.");
+                futures.add(service.submit(texts.get(i)));
+            }
+            for (int i = 0; i < texts.size(); i++)
+                Assert.assertEquals(expected(texts.get(i)),
+                        futures.get(i).join().toString());
+            Assert.assertEquals(2000, service.latency().count());
+            Assert.assertEquals(2000, service.waitTime().count());
+            Assert.assertTrue(service.batches() <= 2000);
+            Assert.assertEquals(0, service.rejected());
+        }
+    }
+
+    @Test
+    public void testBackpressureAndClose() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final TaggingService service = TaggingService.start(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return tagger;
+        }, new TaggingService.Config().withWorkers(1).withMaxBatch(1)
+                                      .withQueueCapacity(2));
+        final CompletableFuture<TaggedSentence> first = service.trySubmit(
+                "The ball rolled.");
+        started.await();
+        // the worker holds the first text; two more fill the queue
+        final CompletableFuture<TaggedSentence> second = service.trySubmit(
+                "Dogs bark.");
+        final CompletableFuture<TaggedSentence> third = service.trySubmit(
+                "Cats sleep.");
+        final CompletableFuture<TaggedSentence> full = service.trySubmit(
+                "No room.");
+        Assert.assertTrue(full.isCompletedExceptionally());
+        Assert.assertEquals(1, service.rejected());
+        release.countDown();
+        service.close();
+        Assert.assertEquals(expected("The ball rolled."),
+                first.join().toString());
+        Assert.assertEquals(expected("Dogs bark."), second.join().toString());
+        Assert.assertEquals(expected("Cats sleep."), third.join().toString());
+        try {
+            service.submit("Too late.").join();
+            Assert.fail("accepted after close");
+        } catch (final CompletionException e) {
+            Assert.assertTrue(
+                    e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+
+    @Test
+    public void testExecutors() {
+        final ExecutorService pool = Executors.newFixedThreadPool(2);
+        try (TaggingService service = TaggingService.start(() -> tagger,
+                new TaggingService.Config().withExecutor(pool)
+                                           .withWorkers(2))) {
+            Assert.assertEquals(expected("A dog."),
+                    service.submit("A dog.").join().toString());
+        }
+        Assert.assertFalse(pool.isShutdown());
+        pool.shutdown();
+        // falls back to platform threads before JDK 21
+        try (TaggingService service = TaggingService.start(() -> tagger,
+                new TaggingService.Config().withVirtualThreads())) {
+            Assert.assertEquals(expected("A dog."),
+                    service.submit(new StringBuilder("A dog.")).join()
+                           .toString());
+        }
+    }
+
+    @Test
+    public void testWorkersThatDoNotStart() throws Exception {
+        // runs one worker and turns the rest away
+        final AtomicInteger runs = new AtomicInteger();
+        final Executor one = r -> {
+            if (runs.getAndIncrement() > 0)
+                throw new RejectedExecutionException();
+            new Thread(r).start();
+        };
+        final TaggingService service = TaggingService.start(() -> tagger,
+                new TaggingService.Config().withExecutor(one)
+                                           .withWorkers(3));
+        Assert.assertEquals(expected("A dog."),
+                service.submit("A dog.").join().toString());
+        Assert.assertTrue(service.close(5, TimeUnit.SECONDS));
+
+        try {
+            TaggingService.start(() -> tagger,
+                    new TaggingService.Config().withExecutor(r -> {
+                        throw new RejectedExecutionException();
+                    }));
+            Assert.fail("started without workers");
+        } catch (final RejectedExecutionException e) {
+            // expected
+        }
+
+        // the second worker waits for a thread until the first stops
+        final ExecutorService pool = Executors.newFixedThreadPool(1);
+        final TaggingService small = TaggingService.start(() -> tagger,
+                new TaggingService.Config().withExecutor(pool)
+                                           .withWorkers(2));
+        Assert.assertEquals(expected("A dog."),
+                small.submit("A dog.").join().toString());
+        Assert.assertTrue(small.close(5, TimeUnit.SECONDS));
+        pool.shutdown();
+    }
+
+    @Test
+    public void testCloseOnWorkerThread() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final TaggingService service = TaggingService.start(() -> {
+            try {
+                release.await();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return tagger;
+        }, new TaggingService.Config().withWorkers(1));
+        final CompletableFuture<TaggedSentence> tagged = service.submit(
+                "A dog.");
+        // runs on the worker once the text is tagged
+        final CompletableFuture<Void> closed = tagged.thenRun(
+                service::close);
+        release.countDown();
+        closed.get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(expected("A dog."), tagged.join().toString());
+        Assert.assertTrue(service.close(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,88 @@
+package fasttag;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.ooba.nlp.fasttag.RuleSet;
+import com.ooba.nlp.fasttag.TaggedSentence;
+import com.ooba.nlp.fasttag.Tagger;
+import com.ooba.nlp.fasttag.TaggingSession;
+
+public class TaggingSessionTest {
+    static Tagger tagger;
+
+    String testText = "The ball rolled down the street. Would the ate dog"
+            + " them? They would walk-ins at 3.5 and N.J. dogs, she said"
+            + " (quietly). He would run!";
+
+    @BeforeClass
+    public static void setUp() {
+        tagger = Tagger.fromText("lexicon.txt");
+    }
+
+    private static void collect(final TaggedSentence settled,
+            final List<String> into) {
+        into.addAll(settled.toTaggedWords());
+    }
+
+    /**
+     * Feeds text to a session in random pieces.
+     */
+    private static List<String> tagInPieces(final Tagger tagger,
+            final String text, final Random random) {
+        final TaggingSession session = tagger.newSession();
+        final List<String> tagged = new ArrayList<>();
+        for (int i = 0; i < text.length();) {
+            final int end = Math.min(text.length(), i + random.nextInt(8));
+            collect(session.append(text.substring(i, end)), tagged);
+            i = end;
+        }
+        collect(session.finish(), tagged);
+        return tagged;
+    }
+
+    @Test
+    public void testSameAsWholeText() {
+        final Random random = new Random(24);
+        final Tagger ahead = tagger.withRules(RuleSet.parse(String.join("\n",
+                "VBD NN PREVTAG DT", "DT PDT NEXTTAG DT",
+                "NN VB NEXTWORD them", "MD NN PREVWORD the")));
+        for (final Tagger t : new Tagger[] { tagger, ahead })
+            for (int round = 0; round < 50; round++)
+                Assert.assertEquals(t.tagText(testText),
+                        tagInPieces(t, testText, random));
+    }
+
+    @Test
+    public void testSettlesAtSeparators() {
+        final List<String> whole = tagger.tagText("the walked. It");
+        final TaggingSession session = tagger.newSession();
+        // "the" is settled, "wal" may still go on
+        Assert.assertEquals(whole.subList(0, 1),
+                session.append("the wal").toTaggedWords());
+        Assert.assertEquals(0, session.append("k").size());
+        // so may "walked." (as "walked.com"), until the space
+        Assert.assertEquals(0, session.append("ed.").size());
+        Assert.assertEquals(whole.subList(1, 3),
+                session.append(" I").toTaggedWords());
+        Assert.assertEquals(0, session.append("t").size());
+        Assert.assertEquals(whole.subList(3, 4),
+                session.finish().toTaggedWords());
+    }
+
+    @Test
+    public void testFinishStartsOver() {
+        final TaggingSession session = tagger.newSession();
+        session.append("the");
+        Assert.assertEquals(tagger.tagText("the"),
+                session.finish().toTaggedWords());
+        session.append("ate");
+        Assert.assertEquals(tagger.tagText("ate"),
+                session.finish().toTaggedWords());
+    }
+}
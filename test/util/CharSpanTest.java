@@ -0,0 +1,52 @@
+package util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ooba.nlp.util.CharSpan;
+
+public class CharSpanTest {
+    String text = "The ball rolled.";
+
+    @Test
+    public void testView() {
+        final CharSpan ball = CharSpan.of(text, 4, 8);
+        Assert.assertEquals(4, ball.length());
+        Assert.assertEquals('b', ball.charAt(0));
+        Assert.assertEquals("ball", ball.toString());
+        Assert.assertEquals("al", ball.subSequence(1, 3).toString());
+        Assert.assertTrue(ball.contentEquals("ball"));
+        Assert.assertFalse(ball.contentEquals("balls"));
+    }
+
+    @Test
+    public void testEqualsAndHashCode() {
+        final CharSpan ball = CharSpan.of(text, 4, 8);
+        Assert.assertEquals("ball".hashCode(), ball.hashCode());
+        Assert.assertEquals(ball, CharSpan.of("a ball", 2, 6));
+        Assert.assertNotEquals(ball, CharSpan.of(text, 0, 3));
+        Assert.assertNotEquals(ball, "ball");
+    }
+
+    @Test
+    public void testSet() {
+        final CharSpan span = new CharSpan();
+        Assert.assertEquals(0, span.length());
+        Assert.assertSame(span, span.set(text, 9, 15));
+        Assert.assertEquals("rolled", span.toString());
+        Assert.assertEquals(9, span.start());
+        Assert.assertEquals(15, span.end());
+        try {
+            span.set(text, 9, 17);
+            Assert.fail("accepted a range past the end");
+        } catch (final IndexOutOfBoundsException e) {
+            // expected
+        }
+        try {
+            span.charAt(6);
+            Assert.fail("read past the view");
+        } catch (final IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ooba.nlp.util.Histogram;
+
+public class HistogramTest {
+
+    @Test
+    public void testEmpty() {
+        final Histogram h = new Histogram();
+        Assert.assertEquals(0, h.count());
+        Assert.assertEquals(0, h.percentile(50));
+        Assert.assertEquals(0, h.mean(), 0);
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+        final Histogram h = new Histogram();
+        for (int v = 0; v < 8; v++)
+            h.record(v);
+        Assert.assertEquals(8, h.count());
+        Assert.assertEquals(3.5, h.mean(), 1e-9);
+        Assert.assertEquals(3, h.percentile(50));
+        Assert.assertEquals(7, h.percentile(100));
+        Assert.assertEquals(7, h.max());
+    }
+
+    @Test
+    public void testPercentilesWithinBucketWidth() {
+        final Histogram h = new Histogram();
+        for (long v = 1; v <= 100000; v++)
+            h.record(v * 1000);
+        for (final double p : new double[] { 1, 50, 90, 99, 99.9 }) {
+            final double exact = p / 100 * 100000 * 1000;
+            final long reported = h.percentile(p);
+            Assert.assertTrue(p + ": " + reported, reported >= exact);
+            Assert.assertTrue(p + ": " + reported, reported <= exact * 1.25);
+        }
+        Assert.assertEquals(100000000, h.percentile(100));
+        h.record(Long.MAX_VALUE);
+        Assert.assertEquals(Long.MAX_VALUE, h.percentile(100));
+        h.reset();
+        Assert.assertEquals(0, h.count());
+        Assert.assertEquals(0, h.max());
+    }
+}
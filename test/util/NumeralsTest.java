@@ -0,0 +1,34 @@
+package util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ooba.nlp.util.Numerals;
+
+public class NumeralsTest {
+
+    @Test
+    public void testNumbers() {
+        final String[] numbers = { "0", "42", "-7", "+3", "3.14", ".5", "5.",
+                "1,234", "12,345,678.90", "6.02e23", "1E-9", "-2.5e+3", "45%",
+                "2.5%", "$5", "$1,000.00", "-$5", "$-5", "\u20ac20",
+                "\u00a33.50", "\u00a5100" };
+        for (final String number : numbers)
+            Assert.assertTrue(number, Numerals.isNumber(number));
+    }
+
+    @Test
+    public void testNotNumbers() {
+        final String[] words = { "", "-", "+", ".", "$", "%", "e5", "1e",
+                "1e+", "3rd", "4x4", "10am", "1,23", "1,2345", "1,,234",
+                "1234,567", "12.34.56", "--5", "$$5", "5$", "%5", "NaN",
+                "Infinity", "1f", "2d", "0x1p3", "dog", "1 000" };
+        for (final String word : words)
+            Assert.assertFalse(word, Numerals.isNumber(word));
+    }
+
+    @Test
+    public void testCharSequence() {
+        Assert.assertTrue(Numerals.isNumber(new StringBuilder("1,000")));
+    }
+}
@@ -3,8 +3,11 @@ package util;
 import static org.junit.Assert.fail;
 
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -12,6 +15,7 @@ import org.junit.Test;
 
 import com.ooba.nlp.fasttag.FastTag;
 import com.ooba.nlp.util.POS;
+import com.ooba.nlp.util.TagIds;
 import com.ooba.nlp.util.Tokenizer;
 import com.ooba.nlp.util.Util;
 
@@ -20,9 +24,13 @@ public class POSTest {
     String[]              possibleTags;
 
     POS[] nouns = { POS.NN, POS.NNP, POS.NNPS, POS.NNS };
-    POS[] verbs = { POS.VB, POS.VBD, POS.VBG, POS.VBN, POS.VBP, POS.VBZ };
+    POS[] verbs = { POS.VB, POS.VBD, POS.VBG, POS.VBN, POS.VBP, POS.VBZ,
+            POS.VM, POS.VBB, POS.VBI, POS.VDB, POS.VDD, POS.VDG, POS.VDI,
+            POS.VDN, POS.VDZ, POS.VHB, POS.VHD, POS.VHG, POS.VHI, POS.VHN,
+            POS.VHZ, POS.VVB, POS.VVD, POS.VVG, POS.VVI, POS.VVN, POS.VVZ,
+            POS.VVNJ, POS.VVGJ, POS.VVGN };
 
-    String   testText = "The quick brown fox jumps over the lazy dog.";
+    String   testText = "The quick brown fox jumped over the lazy dog.";
     POS[]    testTags;
     String[] taggedText;
 
@@ -75,18 +83,80 @@ public class POSTest {
     @Test
     public void testValueOf() {
         for (final String tag : possibleTags)
-            try {
-                POS.valueOf(tag);
-            } catch (final IllegalArgumentException e) {
+            // "JJR|RBR" and the like are ambiguity tags, not POS tags
+            if (!tag.contains("|") && POS.forTag(tag) == null)
                 fail("POS does not account for all possible tags in Lexicon: "
                         + tag);
-            }
+    }
+
+    @Test
+    public void testMedPostCoverage() {
+        final String[] medPost = { "CC", "CS", "CSN", "CST", "DB", "DD", "EX",
+                "GE", "II", "JJ", "JJR", "JJT", "MC", "NN", "NNP", "NNS", "PN",
+                "PND", "PNG", "PNR", "RR", "RRR", "RRT", "SYM", "TO", "VM",
+                "VBB", "VBD", "VBG", "VBI", "VBN", "VBZ", "VDB", "VDD", "VDG",
+                "VDI", "VDN", "VDZ", "VHB", "VHD", "VHG", "VHI", "VHN", "VHZ",
+                "VVB", "VVD", "VVG", "VVI", "VVN", "VVZ", "VVNJ", "VVGJ",
+                "VVGN", "(", ")", ",", ".", ":", "``", "''" };
+        for (final String tag : medPost)
+            Assert.assertNotNull(tag, POS.forTag(tag));
+    }
+
+    @Test
+    public void testForTag() {
+        for (final POS pos : POS.values())
+            Assert.assertSame(pos, POS.forTag(pos.toString()));
+        Assert.assertSame(POS.PERIOD, POS.forTag("."));
+        Assert.assertSame(POS.JJS, POS.forTag("JJSS"));
+        Assert.assertSame(POS.VBZ, POS.forTag("walks/VBZ", 6, 9));
+        Assert.assertNull(POS.forTag("NN|JJ"));
+        Assert.assertNull(POS.forTag(""));
+        Assert.assertNull(POS.forTag("NOTATAGATALL"));
+        Assert.assertNull(POS.forTag("N\u00e9"));
+    }
+
+    @Test
+    public void testClasses() {
+        Assert.assertEquals(EnumSet.copyOf(Arrays.asList(nouns)), POS.NOUNS);
+        Assert.assertEquals(EnumSet.copyOf(Arrays.asList(verbs)), POS.VERBS);
+        Assert.assertTrue(POS.ADJECTIVES.containsAll(
+                Arrays.asList(POS.JJ, POS.JJR, POS.JJS, POS.JJT)));
+        Assert.assertTrue(POS.PUNCTUATION.containsAll(
+                Arrays.asList(POS.PERIOD, POS.COMMA, POS.COLON,
+                        POS.EXCLAMATION, POS.SEMICOLON, POS.OPEN_QUOTE)));
+        Assert.assertFalse(POS.PUNCTUATION.contains(POS.DOLLAR_SIGN));
+        Assert.assertTrue(POS.COMMA.isPunctuation());
+        Assert.assertTrue(POS.JJ.isAdjective());
+        Assert.assertTrue(POS.NNS.is(TagIds.NOUN | TagIds.VERB));
+        Assert.assertEquals(POS.PERIOD.flags(), TagIds.flags(POS.PERIOD.id()));
+    }
+
+    @Test
+    public void testFilter() {
+        Assert.assertEquals(Arrays.asList("fox/NN", "dog/NN"),
+                POS.filter(Arrays.stream(taggedText), POS.NOUNS)
+                   .collect(Collectors.toList()));
+        Assert.assertEquals(1, POS.filter(Arrays.stream(taggedText),
+                POS.PUNCTUATION).count());
+        final Predicate<CharSequence> nouns = POS.taggedAs(POS.NOUNS);
+        Assert.assertTrue(nouns.test(new StringBuilder("dogs/NNS")));
+        Assert.assertFalse(nouns.test(null));
+        Assert.assertFalse(nouns.test("dog"));
+        Assert.assertFalse(nouns.test("dog/NN|JJ"));
+        Assert.assertFalse(POS.isNoun("and/CC"));
+        Assert.assertNull(POS.fromTaggedWord("dog/"));
+        // a bare tag is its own tagged word
+        Assert.assertEquals(POS.NN, POS.fromTaggedWord("NN"));
+        Assert.assertEquals(POS.VBD,
+                POS.fromTaggedWord(new StringBuilder("VBD")));
+        Assert.assertTrue(POS.isNoun("NNS"));
+        Assert.assertTrue(POS.isVerb("VB"));
     }
 
     @Test
     public void testStaticIsVerb() {
         for (final String taggedWord : taggedText)
-            if (taggedWord.startsWith("jumps"))
+            if (taggedWord.startsWith("jumped"))
                 Assert.assertTrue(POS.isVerb(taggedWord));
             else
                 Assert.assertFalse(POS.isVerb(taggedWord));
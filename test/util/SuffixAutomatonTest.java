@@ -0,0 +1,92 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ooba.nlp.util.SuffixAutomaton;
+
+public class SuffixAutomatonTest {
+
+    @Test
+    public void testMatches() {
+        final SuffixAutomaton suffixes = SuffixAutomaton.of("ed", "ly", "al",
+                "s", "ing", "ally", "\u00e9");
+        Assert.assertEquals(7, suffixes.size());
+        Assert.assertArrayEquals(new int[] { 1, 5 },
+                suffixes.matches("finally"));
+        Assert.assertArrayEquals(new int[] { 0 }, suffixes.matches("walked"));
+        Assert.assertArrayEquals(new int[] { 6 }, suffixes.matches("caf\u00e9"));
+        Assert.assertArrayEquals(new int[0], suffixes.matches("dog"));
+        Assert.assertArrayEquals(new int[0], suffixes.matches(""));
+        Assert.assertArrayEquals(new int[0], suffixes.matches("ng"));
+        Assert.assertArrayEquals(new int[0],
+                SuffixAutomaton.of().matches("dog"));
+    }
+
+    @Test
+    public void testEndsWith() {
+        final SuffixAutomaton suffixes = SuffixAutomaton.of("ing", "ng", "g",
+                "ed");
+        final int state = suffixes.walk("running");
+        Assert.assertTrue(suffixes.endsWith(state, 0));
+        Assert.assertTrue(suffixes.endsWith(state, 1));
+        Assert.assertTrue(suffixes.endsWith(state, 2));
+        Assert.assertFalse(suffixes.endsWith(state, 3));
+        Assert.assertFalse(suffixes.endsWith(suffixes.walk("ing!"), 0));
+    }
+
+    @Test
+    public void testBadSuffixes() {
+        final String[][] bad = { { "ed", "ly", "ed" }, { "ed", "" } };
+        for (final String[] suffixes : bad)
+            try {
+                SuffixAutomaton.of(suffixes);
+                Assert.fail(String.join(",", suffixes));
+            } catch (final IllegalArgumentException e) {
+                // expected
+            }
+    }
+
+    private static String random(final Random random, final int max) {
+        final char[] chars = new char[random.nextInt(max + 1)];
+        for (int i = 0; i < chars.length; i++)
+            chars[i] = "abcd\u00e9".charAt(random.nextInt(5));
+        return new String(chars);
+    }
+
+    @Test
+    public void testMatchesEndsWith() {
+        final Random random = new Random(13);
+        for (int run = 0; run < 50; run++) {
+            final List<String> list = new ArrayList<>();
+            for (int s = random.nextInt(60); s > 0; s--) {
+                final String suffix = random(random, 5);
+                if (!suffix.isEmpty() && !list.contains(suffix))
+                    list.add(suffix);
+            }
+            final SuffixAutomaton suffixes = SuffixAutomaton.of(list);
+            for (int w = 0; w < 200; w++) {
+                final String word = random(random, 8);
+                final int state = suffixes.walk(word);
+                final List<Integer> expected = new ArrayList<>();
+                for (int s = 0; s < list.size(); s++) {
+                    Assert.assertEquals(word + " " + list.get(s),
+                            word.endsWith(list.get(s)),
+                            suffixes.endsWith(state, s));
+                    if (word.endsWith(list.get(s)))
+                        expected.add(s);
+                }
+                expected.sort((a, b) -> list.get(a).length()
+                        - list.get(b).length());
+                Assert.assertArrayEquals(word,
+                        expected.stream().mapToInt(Integer::intValue)
+                                .toArray(),
+                        suffixes.matches(word));
+            }
+        }
+    }
+}
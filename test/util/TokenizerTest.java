@@ -0,0 +1,142 @@
+package util;
+
+import java.io.ByteArrayInputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ooba.nlp.util.CharSpan;
+import com.ooba.nlp.util.TokenScanner;
+import com.ooba.nlp.util.Tokenizer;
+
+public class TokenizerTest {
+    String testText = "The quick brown fox jumps over the lazy dog. Did the"
+            + " ball roll, or not? It went to N.J.; \"see\" 'there':\tend.";
+
+    String[] testTokens = { "The", "quick", "brown", "fox", "jumps", "over",
+            "the", "lazy", "dog", ".", "Did", "the", "ball", "roll", ",", "or",
+            "not", "?", "It", "went", "to", "N.J.", ";", "see", "there", ":",
+            "end", "." };
+
+    @Test
+    public void testWordsToList() {
+        Assert.assertArrayEquals(testTokens,
+                Tokenizer.wordsToList(testText).toArray());
+    }
+
+    @Test
+    public void testReader() {
+        Assert.assertArrayEquals(testTokens,
+                Tokenizer.wordsToStream(new StringReader(testText)).toArray());
+    }
+
+    @Test
+    public void testInputStreamAndChannel() {
+        final byte[] bytes = testText.getBytes(StandardCharsets.UTF_8);
+        Assert.assertArrayEquals(testTokens,
+                Tokenizer.wordsToStream(new ByteArrayInputStream(bytes),
+                        StandardCharsets.UTF_8).toArray());
+        Assert.assertArrayEquals(testTokens, Tokenizer.wordsToStream(
+                Channels.newChannel(new ByteArrayInputStream(bytes)),
+                StandardCharsets.UTF_8).toArray());
+    }
+
+    @Test
+    public void testEndlessInputIsLazy() {
+        final String repeated = testText + " ";
+        final Reader endless = new Reader() {
+            @Override
+            public int read(final char[] cbuf, final int off, final int len) {
+                for (int i = 0; i < len; i++)
+                    cbuf[off + i] = repeated.charAt(i % repeated.length());
+                return len;
+            }
+
+            @Override
+            public void close() {}
+        };
+        final Iterator<String> tokens = Tokenizer.wordsToStream(endless)
+                                                 .iterator();
+        for (int i = 0; i < testTokens.length; i++)
+            Assert.assertEquals(testTokens[i], tokens.next());
+    }
+
+    @Test
+    public void testNumbersAreVerbatim() {
+        Assert.assertEquals(
+                Arrays.asList("Pi", "is", "3.14", ",", "not", "-3", "or",
+                        "1.2", ".5", "in", "2016", ".", "-", "x", "."),
+                Tokenizer.wordsToList("Pi is 3.14, not -3 or 1.2.5 in 2016."
+                        + " - x ."));
+    }
+
+    @Test
+    public void testOffsets() {
+        final String text = " It went to N.J., then home.";
+        final TokenScanner scanner = new TokenScanner(text);
+        final StringBuilder spans = new StringBuilder();
+        while (scanner.next())
+            spans.append(scanner.start())
+                 .append('-')
+                 .append(scanner.end())
+                 .append(' ');
+        Assert.assertEquals("1-3 4-8 9-11 12-16 16-17 18-22 23-27 27-28 ",
+                spans.toString());
+    }
+
+    @Test
+    public void testControlCharacters() {
+        final List<String> tokens = Tokenizer.wordsToStream(
+                "caf\u00e9\r\nna\u00efve\u2014end")
+                                             .collect(Collectors.toList());
+        Assert.assertEquals(Arrays.asList("caf", "na", "ve", "end"), tokens);
+    }
+
+    @Test
+    public void testReset() {
+        final char[] borrowed = "dog.".toCharArray();
+        final TokenScanner scanner = new TokenScanner(borrowed);
+        for (final String text : new String[] { "It went to N.J., then home.",
+                "", "x", "3.14 is pi." }) {
+            scanner.reset(new StringBuilder(text));
+            final List<String> tokens = new ArrayList<>();
+            while (scanner.next())
+                tokens.add(scanner.token());
+            Assert.assertEquals(Tokenizer.wordsToList(text), tokens);
+        }
+        Assert.assertEquals("dog.", new String(borrowed));
+    }
+
+    @Test
+    public void testResetRange() {
+        final TokenScanner scanner = new TokenScanner();
+        final String text = "one two. three";
+        scanner.reset(new StringBuilder(text), 4, 8);
+        final StringBuilder spans = new StringBuilder();
+        while (scanner.next())
+            spans.append(scanner.token()).append(' ')
+                 .append(scanner.start()).append('-')
+                 .append(scanner.end()).append(' ');
+        Assert.assertEquals("two 4-7 . 7-8 ", spans.toString());
+    }
+
+    @Test
+    public void testSpans() {
+        final List<CharSpan> spans = Tokenizer.spansToStream(testText)
+                                              .collect(Collectors.toList());
+        Assert.assertArrayEquals(testTokens, spans.stream()
+                                                  .map(CharSpan::toString)
+                                                  .toArray());
+        for (final CharSpan span : spans)
+            Assert.assertSame(testText, span.text());
+    }
+}